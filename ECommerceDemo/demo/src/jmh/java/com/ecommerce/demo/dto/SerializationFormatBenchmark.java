@@ -0,0 +1,105 @@
+package com.ecommerce.demo.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Encode/decode time of a product page and a cart in JSON, CBOR and Smile (see MessageConverterConfig).
+// Payload sizes, raw and gzipped, are printed once per format and size at the start of each trial.
+// Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="SerializationFormatBenchmark"
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    // A default product page, and a large cart
+    @Param({"20", "200"})
+    int items;
+
+    private ObjectWriter productWriter;
+    private ObjectReader productReader;
+    private ObjectWriter cartWriter;
+    private ObjectReader cartReader;
+    private List<ProductDto> products;
+    private List<CartItemDto> cart;
+    private byte[] encodedProducts;
+    private byte[] encodedCart;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper(switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        });
+        productWriter = mapper.writerFor(new TypeReference<List<ProductDto>>() { });
+        productReader = mapper.readerFor(new TypeReference<List<ProductDto>>() { });
+        cartWriter = mapper.writerFor(new TypeReference<List<CartItemDto>>() { });
+        cartReader = mapper.readerFor(new TypeReference<List<CartItemDto>>() { });
+
+        products = new ArrayList<>();
+        cart = new ArrayList<>();
+        for (int i = 1; i <= items; i++) {
+            ProductDto product = new ProductDto();
+            product.setId((long) i);
+            product.setName("Product " + i);
+            product.setPrice(10 + i * 0.99);
+            product.setDescription("Description of product " + i + ", a few words long like the seeded catalog");
+            products.add(product);
+            cart.add(new CartItemDto(1000L + i, (long) i, product.getName(), product.getPrice(), 7L, 1 + i % 3));
+        }
+        encodedProducts = productWriter.writeValueAsBytes(products);
+        encodedCart = cartWriter.writeValueAsBytes(cart);
+        System.out.printf("%n%s, %d items: products %d B (%d B gzipped), cart %d B (%d B gzipped)%n", format, items,
+                encodedProducts.length, gzippedSize(encodedProducts), encodedCart.length, gzippedSize(encodedCart));
+    }
+
+    @Benchmark
+    public byte[] encodeProducts() throws IOException {
+        return productWriter.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public List<ProductDto> decodeProducts() throws IOException {
+        return productReader.readValue(encodedProducts);
+    }
+
+    @Benchmark
+    public byte[] encodeCart() throws IOException {
+        return cartWriter.writeValueAsBytes(cart);
+    }
+
+    @Benchmark
+    public List<CartItemDto> decodeCart() throws IOException {
+        return cartReader.readValue(encodedCart);
+    }
+
+    private static int gzippedSize(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.size();
+    }
+}
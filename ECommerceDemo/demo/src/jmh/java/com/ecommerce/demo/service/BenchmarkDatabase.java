@@ -0,0 +1,74 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.DemoApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Starts the application (without the web server) on its own embedded H2 database and seeds it
+// with generated data, so benchmarks run the real services, repositories and second-level cache.
+// data.sql is skipped: every benchmark seeds exactly the volume it is parameterized with.
+final class BenchmarkDatabase {
+    private static final int BATCH_SIZE = 1000;
+
+    private BenchmarkDatabase() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return start(WebApplicationType.NONE, List.of());
+    }
+
+    // extraConfigurations are added to the application's own; extraArguments are Spring Boot
+    // command-line arguments such as "--server.port=0"
+    static ConfigurableApplicationContext start(WebApplicationType webApplicationType,
+                                                List<Class<?>> extraConfigurations, String... extraArguments) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        // Passed as command-line arguments so they override application.properties
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;MODE=MySQL",
+                "--spring.sql.init.mode=never",
+                "--logging.level.root=WARN"));
+        arguments.addAll(List.of(extraArguments));
+        return new SpringApplicationBuilder(DemoApplication.class)
+                .sources(extraConfigurations.toArray(Class<?>[]::new))
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                .run(arguments.toArray(String[]::new));
+    }
+
+    // Products get ids 1..count
+    static void seedProducts(JdbcTemplate jdbcTemplate, int count) {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= count; i++) {
+            double price = (i * 7919L % 100_000) / 100.0; // Spread prices deterministically over 0..999.99
+            rows.add(new Object[]{"Product " + i, price, "Benchmark product number " + i});
+            if (rows.size() == BATCH_SIZE || i == count) {
+                jdbcTemplate.batchUpdate("INSERT INTO products (name, price, description) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    // Customers get ids 1..count
+    static void seedCustomers(JdbcTemplate jdbcTemplate, int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            rows.add(new Object[]{"Customer " + i, "customer" + i + "@example.com"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO customers (name, email) VALUES (?, ?)", rows);
+    }
+
+    // Put products 1..lines into the customer's cart, one of each
+    static void seedCart(JdbcTemplate jdbcTemplate, long customerId, int lines) {
+        List<Object[]> rows = new ArrayList<>(lines);
+        for (long productId = 1; productId <= lines; productId++) {
+            rows.add(new Object[]{customerId, productId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cart_items (id, customer_id, product_id, quantity) "
+                + "VALUES (NEXT VALUE FOR cart_items_seq, ?, ?, 1)", rows);
+    }
+}
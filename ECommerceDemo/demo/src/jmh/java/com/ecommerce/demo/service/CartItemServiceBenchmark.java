@@ -0,0 +1,58 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cart reads and adds for carts of 1 to 200 lines (database-backed CartItemService)
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 3) // Hibernate and H2 code paths take a while to get JIT-compiled
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class CartItemServiceBenchmark {
+    private static final int PRODUCT_COUNT = 1000;
+    private static final long CUSTOMER_ID = 1L;
+
+    @Param({"1", "20", "200"})
+    int cartLines;
+
+    private ConfigurableApplicationContext context;
+    private CartItemService cartItemService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkDatabase.seedProducts(jdbcTemplate, PRODUCT_COUNT);
+        BenchmarkDatabase.seedCustomers(jdbcTemplate, 1);
+        BenchmarkDatabase.seedCart(jdbcTemplate, CUSTOMER_ID, cartLines);
+        cartItemService = context.getBean(CartItemService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<CartItemDto> getCartItemsByCustomer() {
+        return cartItemService.getCartItemsByCustomer(CUSTOMER_ID);
+    }
+
+    // Adds one more of a product already in the cart, so the cart keeps its size during the run
+    @Benchmark
+    public CartItemDto addOrUpdateCartItem() {
+        CartItemDto request = new CartItemDto();
+        request.setCustomerId(CUSTOMER_ID);
+        request.setProductId(ThreadLocalRandom.current().nextLong(1, cartLines + 1));
+        request.setQuantity(1);
+        return cartItemService.addOrUpdateCartItem(request);
+    }
+}
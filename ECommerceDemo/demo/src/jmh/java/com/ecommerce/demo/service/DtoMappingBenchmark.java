@@ -0,0 +1,56 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.entity.CartItem;
+import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.entity.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Entity -> DTO mappers in isolation (no Spring context, no database)
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+    // The mappers use none of the injected dependencies
+    private final ProductService productService = new ProductService(null, null, null, null, null, null, 1000);
+    private final CartItemService cartItemService = new CartItemService(null, null, null, null, null, null);
+
+    private Product product;
+    private CartItem cartItem;
+
+    @Setup
+    public void setUp() {
+        product = new Product();
+        product.setId(42L);
+        product.setName("Noise-cancelling headphones");
+        product.setPrice(149.99);
+        product.setDescription("Wireless over-ear headphones with active noise cancelling");
+
+        Customer customer = new Customer();
+        customer.setId(7L);
+        customer.setName("Alice Smith");
+        customer.setEmail("alice@example.com");
+
+        cartItem = new CartItem();
+        cartItem.setId(101L);
+        cartItem.setProduct(product);
+        cartItem.setCustomer(customer);
+        cartItem.setQuantity(3);
+    }
+
+    @Benchmark
+    public ProductDto productToDto() {
+        return productService.convertToDto(product);
+    }
+
+    @Benchmark
+    public CartItemDto cartItemToDto() {
+        return cartItemService.convertToDto(cartItem);
+    }
+}
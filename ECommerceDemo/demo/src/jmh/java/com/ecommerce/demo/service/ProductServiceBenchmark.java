@@ -0,0 +1,52 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ProductDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Catalog reads against catalogs of 1k, 100k and 1M products.
+// Run one size with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="ProductServiceBenchmark -p productCount=1000"
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 3) // Hibernate and H2 code paths take a while to get JIT-compiled
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProductServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int productCount;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start();
+        BenchmarkDatabase.seedProducts(context.getBean(JdbcTemplate.class), productCount);
+        productService = context.getBean(ProductService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Whole catalog as DTOs, as the original unpaged GET /products did
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<ProductDto> getAllProducts() {
+        return productService.getAllProducts();
+    }
+
+    // Random product by id; mostly second-level cache hits once warmed up
+    @Benchmark
+    public ProductDto getProductById() {
+        return productService.getProductById(ThreadLocalRandom.current().nextLong(1, productCount + 1));
+    }
+}
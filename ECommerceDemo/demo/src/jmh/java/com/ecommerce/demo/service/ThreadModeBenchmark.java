@@ -0,0 +1,122 @@
+package com.ecommerce.demo.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Platform-thread vs virtual-thread request handling over real HTTP.
+// One operation is a burst of `concurrency` simultaneous cart requests (each one a few JDBC
+// round trips), so throughput x concurrency = requests per second. Tomcat keeps its default
+// 200 platform threads; in virtual mode the database bulkhead is on as well.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 3) // Hibernate and H2 code paths take a while to get JIT-compiled
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ThreadModeBenchmark {
+    private static final int CUSTOMERS = 1000;
+    private static final int CART_LINES = 5;
+
+    // The same admin/admin user as application.properties. Boot's default in-memory user has its
+    // password upgraded to bcrypt after the first login, which would make every request of the
+    // burst spend its time in BCrypt.checkpw instead of in request handling.
+    @Configuration(proxyBeanMethods = false)
+    static class PlainPasswordUser {
+        @Bean
+        UserDetailsService userDetailsService() {
+            return username -> {
+                if (!"admin".equals(username)) {
+                    throw new UsernameNotFoundException(username);
+                }
+                return User.withUsername("admin").password("{noop}admin").roles("USER").build();
+            };
+        }
+    }
+
+    @Param({"false", "true"})
+    boolean virtualThreads;
+
+    @Param({"100", "1000"})
+    int concurrency;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient httpClient;
+    private List<HttpRequest> requests;
+    private int nextCustomer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDatabase.start(WebApplicationType.SERVLET, List.of(PlainPasswordUser.class),
+                "--server.port=0", "--spring.threads.virtual.enabled=" + virtualThreads);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkDatabase.seedProducts(jdbcTemplate, 100);
+        BenchmarkDatabase.seedCustomers(jdbcTemplate, CUSTOMERS);
+        for (long customerId = 1; customerId <= CUSTOMERS; customerId++) {
+            BenchmarkDatabase.seedCart(jdbcTemplate, customerId, CART_LINES);
+        }
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("admin:admin".getBytes());
+        requests = new ArrayList<>(CUSTOMERS);
+        for (int customerId = 1; customerId <= CUSTOMERS; customerId++) {
+            requests.add(HttpRequest.newBuilder(URI.create(baseUrl + "/cart/" + customerId))
+                    .header("Authorization", authorization)
+                    .timeout(Duration.ofSeconds(60))
+                    .build());
+        }
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder().executor(clientExecutor).build();
+
+        // One request at a time first, so the first bursts do not queue behind cold, interpreted code
+        for (HttpRequest request : requests) {
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).join();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        clientExecutor.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int cartRequestBurst() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            HttpRequest request = requests.get(nextCustomer++ % CUSTOMERS);
+            responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        int ok = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() == 200) {
+                ok++;
+            }
+        }
+        if (ok != concurrency) {
+            throw new IllegalStateException((concurrency - ok) + " of " + concurrency + " requests failed");
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,111 @@
+package com.ecommerce.demo.config;
+
+import com.ecommerce.demo.dto.BulkheadStatsDto;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bulkhead in front of the connection pool: a connection can only be borrowed with a permit from a
+// fair semaphore, and the permit is returned when the connection is closed. With one permit per
+// pooled connection, any number of (virtual) threads wait in FIFO order here instead of all
+// hammering the pool at once, and the time spent waiting is measured.
+public class BulkheadDataSource extends DelegatingDataSource {
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final long acquireTimeoutMillis;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalQueueNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    public BulkheadDataSource(DataSource target, int maxPermits, long acquireTimeoutMillis) {
+        super(target);
+        this.permits = new Semaphore(maxPermits, true); // Fair: first come, first served
+        this.maxPermits = maxPermits;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquirePermit();
+        try {
+            return releasingOnClose(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquirePermit();
+        try {
+            return releasingOnClose(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public BulkheadStatsDto getStats() {
+        BulkheadStatsDto stats = new BulkheadStatsDto();
+        stats.setMaxPermits(maxPermits);
+        stats.setAvailablePermits(permits.availablePermits());
+        stats.setQueueLength(permits.getQueueLength());
+        stats.setAcquired(acquired.sum());
+        stats.setTimeouts(timeouts.sum());
+        long attempts = acquired.sum() + timeouts.sum();
+        stats.setAverageQueueMillis(attempts == 0 ? 0 : totalQueueNanos.sum() / 1e6 / attempts);
+        stats.setMaxQueueMillis(maxQueueNanos.get() / 1e6);
+        return stats;
+    }
+
+    private void acquirePermit() throws SQLException {
+        long start = System.nanoTime();
+        boolean granted;
+        try {
+            granted = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection permit", e);
+        }
+        long waited = System.nanoTime() - start;
+        totalQueueNanos.add(waited);
+        maxQueueNanos.accumulateAndGet(waited, Math::max);
+        if (!granted) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException(
+                    "No database connection permit available within " + acquireTimeoutMillis + " ms");
+        }
+        acquired.increment();
+    }
+
+    // Hand out a connection whose first close() also returns the permit
+    private Connection releasingOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    boolean closing = method.getName().equals("close") && method.getParameterCount() == 0;
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if (closing && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+}
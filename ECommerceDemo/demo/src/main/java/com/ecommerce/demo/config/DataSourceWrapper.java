@@ -0,0 +1,35 @@
+package com.ecommerce.demo.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+// Base for the post-processors that wrap the application DataSource. They run in a fixed order,
+// so the layers always nest the same way, from the connection pool outwards:
+//   pool <- bulkhead (BULKHEAD) <- read/write routing (READ_ROUTING) <- SQL metrics proxy (SQL_METRICS)
+// The bulkhead guards only the primary pool, and the SQL metrics see statements on every database.
+public abstract class DataSourceWrapper implements BeanPostProcessor, Ordered {
+    public static final int BULKHEAD = 0;
+    public static final int READ_ROUTING = 10;
+    public static final int SQL_METRICS = 20;
+
+    private final int order;
+
+    protected DataSourceWrapper(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public final Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource ? wrap(dataSource, beanName) : bean;
+    }
+
+    // The DataSource to use instead, or dataSource itself to leave it alone
+    protected abstract DataSource wrap(DataSource dataSource, String beanName);
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ecommerce.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+// Wraps the application DataSource in a BulkheadDataSource when app.db.bulkhead.enabled=true
+// (the default whenever virtual threads are on, see application.properties)
+@Configuration
+@ConditionalOnProperty(name = "app.db.bulkhead.enabled", havingValue = "true")
+public class DatabaseBulkheadConfig {
+
+    // Static so the post-processor is registered before the DataSource is created
+    @Bean
+    public static DataSourceWrapper databaseBulkheadPostProcessor(Environment environment) {
+        int configuredPermits = environment.getProperty("app.db.bulkhead.permits", Integer.class, 0);
+        long acquireTimeoutMillis = environment.getProperty("app.db.bulkhead.acquire-timeout-ms", Long.class, 30_000L);
+        return new DataSourceWrapper(DataSourceWrapper.BULKHEAD) {
+            @Override
+            protected DataSource wrap(DataSource dataSource, String beanName) {
+                if (dataSource instanceof BulkheadDataSource) {
+                    return dataSource;
+                }
+                // One permit per pooled connection unless configured otherwise
+                int permits = configuredPermits > 0 ? configuredPermits
+                        : dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+                return new BulkheadDataSource(dataSource, permits, acquireTimeoutMillis);
+            }
+        };
+    }
+}
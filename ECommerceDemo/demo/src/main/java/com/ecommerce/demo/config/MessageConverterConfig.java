@@ -0,0 +1,49 @@
+package com.ecommerce.demo.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+// Binary encodings of the same DTOs for clients on slow networks:
+// Accept: application/cbor or application/x-jackson-smile, and the same Content-Type for request bodies.
+// Both keep the JSON structure, so no schema is needed on either side. Numbers are binary and strings
+// are length-prefixed instead of quoted; Smile also writes each field name once per response and refers
+// back to it afterwards, which is where most of the saving on lists of DTOs comes from.
+//
+// JSON stays the default: the binary converters are placed after the JSON one, so a request without
+// an Accept header, or with */*, still gets JSON. Their ObjectMappers come from Spring Boot's builder,
+// so spring.jackson.* settings apply to all three formats alike.
+@Configuration
+public class MessageConverterConfig implements WebMvcConfigurer {
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    public MessageConverterConfig(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring MVC registers these itself when the formats are on the classpath, with default mappers
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+
+        int afterJson = 0;
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                afterJson = i + 1;
+            }
+        }
+        converters.add(afterJson, new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.factory(new SmileFactory()).build()));
+        converters.add(afterJson, new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.factory(new CBORFactory()).build()));
+    }
+}
@@ -0,0 +1,134 @@
+package com.ecommerce.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.CacheStoreMode;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Puts a ReadWriteRoutingDataSource in front of the application DataSource when
+// app.db.read-replicas.enabled=true: read-only transactions go to the replicas in app.db.read-replicas.urls,
+// everything else to the primary (spring.datasource.*). Each replica gets its own Hikari pool, which is
+// only started on first use so that a replica that is down at startup does not stop the application.
+// The pools are closed together with the DataSource bean.
+@Configuration
+@ConditionalOnProperty(name = "app.db.read-replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    // Static so the post-processor is registered before the DataSource is created
+    @Bean
+    public static DataSourceWrapper readReplicaRoutingPostProcessor(Environment environment) {
+        return new DataSourceWrapper(DataSourceWrapper.READ_ROUTING) {
+            @Override
+            protected DataSource wrap(DataSource dataSource, String beanName) {
+                if (dataSource instanceof LazyConnectionDataSourceProxy) {
+                    return dataSource;
+                }
+                List<String> urls = Arrays.stream(environment.getProperty("app.db.read-replicas.urls", "").split(","))
+                        .map(String::trim)
+                        .filter(url -> !url.isEmpty())
+                        .toList();
+                if (urls.isEmpty()) {
+                    throw new IllegalStateException("app.db.read-replicas.enabled is set but app.db.read-replicas.urls is empty");
+                }
+                List<HikariDataSource> replicas = new ArrayList<>();
+                List<String> names = new ArrayList<>();
+                for (int i = 0; i < urls.size(); i++) {
+                    replicas.add(replicaPool(environment, urls.get(i), "replica-" + (i + 1)));
+                    names.add("replica-" + (i + 1));
+                }
+                ReadWriteRoutingDataSource.Balancing balancing = ReadWriteRoutingDataSource.Balancing.valueOf(
+                        environment.getProperty("app.db.read-replicas.balancing", "round-robin")
+                                .trim().replace('-', '_').toUpperCase());
+                long retryAfterFailureMillis = environment.getProperty(
+                        "app.db.read-replicas.retry-after-failure-ms", Long.class, 5_000L);
+                // Lazy, so the routing decision is taken at the first statement, inside the transaction
+                return new ClosingLazyConnectionDataSourceProxy(
+                        new ReadWriteRoutingDataSource(dataSource, replicas, names, balancing, retryAfterFailureMillis));
+            }
+        };
+    }
+
+    // Spring has Hibernate hold on to a connection until the session closes, and with open-in-view the session
+    // lasts the whole request: a write after a read-only transaction would reuse the replica connection.
+    // Released after every transaction, each transaction gets a connection (and a routing decision) of its own.
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionsAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    // Replicas lag behind, so what a read-only transaction loads must not go into the second-level cache
+    // (or the query cache), which every later transaction trusts, on the primary too. Read-only transactions
+    // only read from it (CacheMode.GET); read-write transactions, which always run on the primary, fill it.
+    // Replaces the JpaTransactionManager Spring Boot would otherwise create.
+    @Bean
+    public JpaTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        JpaTransactionManager transactionManager = new JpaTransactionManager() {
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+                super.doBegin(transaction, definition);
+                EntityManagerHolder holder = (EntityManagerHolder)
+                        TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+                // Set for every transaction: with open-in-view one session runs several of them.
+                // Queries follow the session's cache mode, find() the JPA store mode, so both are set.
+                boolean readOnly = definition.isReadOnly();
+                Session session = holder.getEntityManager().unwrap(Session.class);
+                session.setCacheMode(readOnly ? CacheMode.GET : CacheMode.NORMAL);
+                session.setProperty(AvailableSettings.JAKARTA_SHARED_CACHE_STORE_MODE,
+                        readOnly ? CacheStoreMode.BYPASS : CacheStoreMode.USE);
+            }
+        };
+        customizers.ifAvailable(customizer -> customizer.customize(transactionManager));
+        return transactionManager;
+    }
+
+    // The DataSource bean is destroyed through its outermost wrapper (the SQL metrics proxy), which closes
+    // what it wraps if it can; this passes that on to the routing DataSource and so to the replica pools
+    private static final class ClosingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy
+            implements Closeable {
+        ClosingLazyConnectionDataSourceProxy(ReadWriteRoutingDataSource target) {
+            super(target);
+        }
+
+        @Override
+        public void close() {
+            ((ReadWriteRoutingDataSource) obtainTargetDataSource()).close();
+        }
+    }
+
+    private static HikariDataSource replicaPool(Environment environment, String url, String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(environment.getProperty("app.db.read-replicas.username",
+                environment.getProperty("spring.datasource.username")));
+        pool.setPassword(environment.getProperty("app.db.read-replicas.password",
+                environment.getProperty("spring.datasource.password")));
+        pool.setReadOnly(true);
+        pool.setMaximumPoolSize(environment.getProperty("app.db.read-replicas.pool-size", Integer.class, 10));
+        // Fail over to the next replica quickly instead of waiting the default 30 s
+        pool.setConnectionTimeout(environment.getProperty("app.db.read-replicas.connection-timeout-ms", Long.class, 1_000L));
+        pool.setInitializationFailTimeout(-1); // Start even when the replica is unreachable
+        return pool;
+    }
+}
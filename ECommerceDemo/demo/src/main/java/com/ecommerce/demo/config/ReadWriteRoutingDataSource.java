@@ -0,0 +1,197 @@
+package com.ecommerce.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Sends the connections of read-only transaction (@Transactional(readOnly = true)) to one of the
+// read replicas and everything else to the primary. Used behind a LazyConnectionDataSourceProxy
+// (see ReadReplicaConfig), so the connection is only fetched at the first statement, when the
+// transaction, and whether it is read-only, is already known.
+//
+// Replicas are picked round-robin or by the fewest active connections. A replica that fails to hand out
+// a connection is skipped for retryAfterFailureMillis and the next one is tried; when none is left the
+// read goes to the primary, so a replica outage costs latency rather than errors.
+//
+// Owns the replica pools: close() shuts them down, and the primary with them if it can be closed.
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    // Set for a read-only transaction that has to see the primary (read-your-writes)
+    private static final ThreadLocal<Boolean> PRIMARY_FOR_TRANSACTION = new ThreadLocal<>();
+
+    public enum Balancing {
+        ROUND_ROBIN, LEAST_CONNECTIONS
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Balancing balancing;
+    private final long retryAfterFailureNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder replicaFailures = new LongAdder();
+
+    private static final class Replica {
+        final DataSource dataSource;
+        final String name;
+        volatile long downUntilNanos;
+        volatile boolean down;
+
+        Replica(DataSource dataSource, String name) {
+            this.dataSource = dataSource;
+            this.name = name;
+        }
+
+        boolean available(long now) {
+            return !down || now - downUntilNanos >= 0;
+        }
+
+        int activeConnections() {
+            if (dataSource instanceof HikariDataSource hikari) {
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean(); // null until the pool has started
+                return pool != null ? pool.getActiveConnections() : 0;
+            }
+            return 0;
+        }
+    }
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, List<String> replicaNames,
+                                      Balancing balancing, long retryAfterFailureMillis) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add(new Replica(replicas.get(i), replicaNames.get(i)));
+        }
+        this.balancing = balancing;
+        this.retryAfterFailureNanos = retryAfterFailureMillis * 1_000_000;
+    }
+
+    // Sends the current read-only transaction to the primary. Has to be called before its first statement;
+    // does nothing outside a transaction.
+    public static void usePrimaryForCurrentTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || PRIMARY_FOR_TRANSACTION.get() != null) {
+            return;
+        }
+        PRIMARY_FOR_TRANSACTION.set(Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                PRIMARY_FOR_TRANSACTION.remove();
+            }
+        });
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        if (PRIMARY_FOR_TRANSACTION.get() == null) {
+            for (Replica replica : candidates()) {
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replica.down = false;
+                    replicaReads.increment();
+                    return connection;
+                } catch (SQLException | RuntimeException e) {
+                    replica.downUntilNanos = System.nanoTime() + retryAfterFailureNanos;
+                    replica.down = true;
+                    replicaFailures.increment();
+                    log.warn("Read replica {} failed, skipping it for {} ms: {}",
+                            replica.name, retryAfterFailureNanos / 1_000_000, e.getMessage());
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    // Replicas that are not marked down, in the order to try them
+    private List<Replica> candidates() {
+        long now = System.nanoTime();
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.available(now)) {
+                candidates.add(replica);
+            }
+        }
+        if (balancing == Balancing.LEAST_CONNECTIONS) {
+            // Stable sort: ties keep the round-robin order, so idle replicas still share the load
+            candidates.sort(Comparator.comparingInt(Replica::activeConnections));
+        }
+        return candidates;
+    }
+
+    // Credentials are those of each pool, so the username/password variant is only meant for the primary
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    // Read-only connections served by a replica
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    // Read-only connections served by the primary: read-your-writes, or no replica available
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    public long getReplicaFailures() {
+        return replicaFailures.sum();
+    }
+
+    // Called when the DataSource bean is destroyed. Keeps going when one of them fails to close.
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            closeQuietly(replica.dataSource, replica.name);
+        }
+        closeQuietly(primary, "primary");
+    }
+
+    private static void closeQuietly(DataSource dataSource, String name) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Closing {} DataSource failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    // Lets callers reach the wrappers around the primary (e.g. the BulkheadDataSource for its stats)
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ecommerce.demo.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+// Read-your-writes on top of the read replicas: replicas lag behind the primary, so a customer who has
+// just changed their cart could read it back without the change. Writers record what they changed, and
+// for app.db.read-replicas.sticky-window-ms afterwards reads of the same thing go to the primary.
+//
+// The window is kept in this instance's memory, so it only holds when a customer's requests reach
+// the same instance. Does nothing unless read replicas are enabled and the window is above 0.
+//
+// readFromPrimary() is for reads that must not be older than something read just before (see its comment).
+@Component
+public class ReadYourWrites {
+    private static final int MAX_TRACKED_WRITES = 100_000;
+
+    private final Cache<String, Boolean> recentWrites;
+    private final TransactionTemplate primaryRead; // Null without read replicas
+
+    public ReadYourWrites(PlatformTransactionManager transactionManager,
+                          @Value("${app.db.read-replicas.enabled:false}") boolean replicasEnabled,
+                          @Value("${app.db.read-replicas.sticky-window-ms:0}") long stickyWindowMillis) {
+        if (replicasEnabled) {
+            this.primaryRead = new TransactionTemplate(transactionManager);
+            this.primaryRead.setReadOnly(true);
+        } else {
+            this.primaryRead = null;
+        }
+        this.recentWrites = replicasEnabled && stickyWindowMillis > 0
+                ? Caffeine.newBuilder()
+                        .expireAfterWrite(Duration.ofMillis(stickyWindowMillis))
+                        .maximumSize(MAX_TRACKED_WRITES)
+                        .build()
+                : null;
+    }
+
+    // Call from the writing transaction. The window starts once it has committed; a rolled back write changes nothing.
+    public void recordWrite(String scope, Object id) {
+        if (recentWrites == null) {
+            return;
+        }
+        String key = scope + ":" + id;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWrites.put(key, Boolean.TRUE);
+                }
+            });
+        } else {
+            recentWrites.put(key, Boolean.TRUE);
+        }
+    }
+
+    // Call at the start of a read-only transaction, before its first query
+    public void beforeRead(String scope, Object id) {
+        if (recentWrites != null && recentWrites.getIfPresent(scope + ":" + id) != null) {
+            ReadWriteRoutingDataSource.usePrimaryForCurrentTransaction();
+        }
+    }
+
+    // Runs read in a read-only transaction on the primary. For a body labelled with a version read just
+    // before (ETags, the product JSON cache): replicas are not equally far behind, so a body read from
+    // another replica could be older than its version. The primary never is. Without replicas, just runs read.
+    public <T> T readFromPrimary(Supplier<T> read) {
+        if (primaryRead == null) {
+            return read.get();
+        }
+        return primaryRead.execute(status -> {
+            ReadWriteRoutingDataSource.usePrimaryForCurrentTransaction();
+            return read.get();
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.ecommerce.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Enables @Scheduled methods (e.g. the write-behind cart flush) and @Async methods.
+// Both run on virtual threads when spring.threads.virtual.enabled=true.
+// Class-based proxies like the rest of Spring Boot's AOP: an interface proxy of a bean with @Async methods
+// (e.g. WriteBehindCartService as a CartService) would hide its other public methods, such as flush().
+@Configuration
+@EnableScheduling
+@EnableAsync(proxyTargetClass = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,63 @@
+package com.ecommerce.demo.controller;
+
+import com.ecommerce.demo.dto.BulkheadStatsDto;
+import com.ecommerce.demo.dto.CacheRegionStatsDto;
+import com.ecommerce.demo.dto.CartExpiryStatsDto;
+import com.ecommerce.demo.dto.SlowQueryDto;
+import com.ecommerce.demo.exception.ResourceNotFoundException;
+import com.ecommerce.demo.service.CacheStatisticsService;
+import com.ecommerce.demo.service.CartExpiryService;
+import com.ecommerce.demo.service.DatabaseStatisticsService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Operational endpoints for inspecting the running application (not part of the shop API)
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+    private final CacheStatisticsService cacheStatisticsService;
+    private final DatabaseStatisticsService databaseStatisticsService;
+    private final ObjectProvider<CartExpiryService> cartExpiryService; // Absent when app.cart.expiry.enabled=false
+
+    public AdminController(CacheStatisticsService cacheStatisticsService,
+                           DatabaseStatisticsService databaseStatisticsService,
+                           ObjectProvider<CartExpiryService> cartExpiryService) {
+        this.cacheStatisticsService = cacheStatisticsService;
+        this.databaseStatisticsService = databaseStatisticsService;
+        this.cartExpiryService = cartExpiryService;
+    }
+
+    // GET /api/admin/cache - Hit/miss/put/eviction counts per second-level cache region
+    @GetMapping("/cache")
+    public ResponseEntity<List<CacheRegionStatsDto>> getCacheStatistics() {
+        return ResponseEntity.ok(cacheStatisticsService.getRegionStatistics());
+    }
+
+    // GET /api/admin/db-bulkhead - Connection permits in use, waiting threads and queue times
+    // (404 unless app.db.bulkhead.enabled=true)
+    @GetMapping("/db-bulkhead")
+    public ResponseEntity<BulkheadStatsDto> getDatabaseBulkheadStatistics() {
+        return ResponseEntity.ok(databaseStatisticsService.getBulkheadStatistics());
+    }
+
+    // GET /api/admin/slow-queries?limit=50 - Recent slow SQL statements with duration, bind count
+    // and calling method, newest first (see app.sql.slow-query.* in application.properties)
+    @GetMapping("/slow-queries")
+    public ResponseEntity<List<SlowQueryDto>> getSlowQueries(@RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(databaseStatisticsService.getSlowQueries(limit));
+    }
+
+    // GET /api/admin/cart-expiry - Carts and rows deleted by the abandoned-cart sweeper, last run and in total
+    // (404 if app.cart.expiry.enabled=false)
+    @GetMapping("/cart-expiry")
+    public ResponseEntity<CartExpiryStatsDto> getCartExpiryStatistics() {
+        CartExpiryService service = cartExpiryService.getIfAvailable();
+        if (service == null) {
+            throw new ResourceNotFoundException("Cart expiry is not enabled (app.cart.expiry.enabled)");
+        }
+        return ResponseEntity.ok(service.getStats());
+    }
+}
@@ -41,7 +41,7 @@ public class ApiRootController {
                     <p>Note: Paths below are relative to the /api context path.</p>
                     <p>Example Usage:</p>
                     <ul>
-                        <li><code>GET /products</code> - Get all products</li>
+                        <li><code>GET /products?size=20&amp;sort=price</code> - Get a page of products (pass <code>after={nextCursor}</code> for the next one)</li>
                         <li><code>POST /products</code> - Create a new product</li>
                         <li><code>GET /products/{id}</code> - Get product by ID</li>
                         <li><code>PUT /products/{id}</code> - Update product by ID</li>
@@ -2,46 +2,86 @@ package com.ecommerce.demo.controller;
 
 import com.ecommerce.demo.dto.CartItemDto; // For output DTO
 import com.ecommerce.demo.dto.CartItemDto; // For input DTO
-import com.ecommerce.demo.service.CartItemService; // Corrected service name
+import com.ecommerce.demo.dto.CartSummaryDto;
+import com.ecommerce.demo.dto.ResourceVersion;
+import com.ecommerce.demo.limit.AdaptiveConcurrencyLimit;
+import com.ecommerce.demo.service.CartService; // CartItemService, or WriteBehindCartService when enabled
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
+// Writes run under the "cart-writes" concurrency limit: in a rush they are shed with 503 + Retry-After
+// before they tie up the connection pool, which keeps the catalog reads (their own limit) responsive.
 @RestController
 @RequestMapping("/cart") // Base URL for shopping cart endpoints
 public class CartController {
-    // Inject the now-correctly named CartItemService
-    private final CartItemService cartItemService;
+    // Inject the active CartService implementation
+    private final CartService cartService;
+    // A cart belongs to one customer: only their own client may keep a copy, and must revalidate it.
+    // Responses vary by Accept because the cart can also be sent as CBOR or Smile.
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
 
-    public CartController(CartItemService cartItemService) {
-        this.cartItemService = cartItemService;
+    public CartController(CartService cartService) {
+        this.cartService = cartService;
     }
 
     // GET /api/cart/{customerId} - Get all cart items for a specific customer
     // This method now correctly returns a List of CartItemDto
+    // Honours If-None-Match / If-Modified-Since: an unchanged cart is answered with 304 Not Modified
+    // after one aggregate query, without loading or serializing the lines.
+    // JSON, CBOR and Smile copies of the same cart have different ETags (see ResponseFormat).
     @GetMapping("/{customerId}")
-    public ResponseEntity<List<CartItemDto>> getCustomerCart(@PathVariable Long customerId) {
-        List<CartItemDto> cartItems = cartItemService.getCartItemsByCustomer(customerId);
-        return ResponseEntity.ok(cartItems);
+    public ResponseEntity<List<CartItemDto>> getCustomerCart(@PathVariable Long customerId, WebRequest request)
+            throws HttpMediaTypeNotAcceptableException {
+        ResponseFormat format = ResponseFormat.negotiate(request);
+        ResourceVersion version = cartService.getCartVersion(customerId); // Before the lines, see ProductController
+        if (request.checkNotModified(format.etag(version), version.lastModifiedMillis())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        List<CartItemDto> cartItems = cartService.getCartItemsByCustomer(customerId);
+        return ResponseEntity.ok().cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).contentType(format.mediaType).body(cartItems);
+    }
+
+    // GET /api/cart/{customerId}/summary - Line count, total quantity and subtotal for page headers
+    // Cheaper than fetching the whole cart when only the totals are shown
+    @GetMapping("/{customerId}/summary")
+    public ResponseEntity<CartSummaryDto> getCartSummary(@PathVariable Long customerId) {
+        return ResponseEntity.ok(cartService.getCartSummary(customerId));
     }
 
     // POST /api/cart - Add a new item to cart or update quantity if it already exists
     // Accepts CartItemRequest DTO as input from the client
     @PostMapping
+    @AdaptiveConcurrencyLimit("cart-writes")
     public ResponseEntity<CartItemDto> addOrUpdateCartItem(@RequestBody CartItemDto cartItemRequest) {
-        CartItemDto savedCartItem = cartItemService.addOrUpdateCartItem(cartItemRequest);
+        CartItemDto savedCartItem = cartService.addOrUpdateCartItem(cartItemRequest);
         return new ResponseEntity<>(savedCartItem, HttpStatus.CREATED);
     }
 
+    // POST /api/cart/{customerId}/batch - Add several products at once, in one transaction
+    // Body: [{"productId": 1, "quantity": 2}, {"productId": 3, "quantity": 1}]
+    @PostMapping("/{customerId}/batch")
+    @AdaptiveConcurrencyLimit("cart-writes")
+    public ResponseEntity<List<CartItemDto>> addOrUpdateCartItems(@PathVariable Long customerId,
+                                                                  @RequestBody List<CartItemDto> cartItemRequests) {
+        List<CartItemDto> savedCartItems = cartService.addOrUpdateCartItems(customerId, cartItemRequests);
+        return new ResponseEntity<>(savedCartItems, HttpStatus.CREATED);
+    }
+
     // PUT /api/cart/items/{cartItemId}/quantity - Update the quantity of a specific cart item
     @PutMapping("/items/{cartItemId}/quantity")
+    @AdaptiveConcurrencyLimit("cart-writes")
     public ResponseEntity<CartItemDto> updateCartItemQuantity(
             @PathVariable Long cartItemId,
             @RequestParam int quantity) { // Use @RequestParam for simple quantity update
 
-        CartItemDto updatedCartItem = cartItemService.updateCartItemQuantity(cartItemId, quantity);
+        CartItemDto updatedCartItem = cartService.updateCartItemQuantity(cartItemId, quantity);
 
         if (updatedCartItem == null) {
             // If the item was removed (quantity <= 0), return No Content
@@ -52,15 +92,17 @@ public class CartController {
 
     // DELETE /api/cart/items/{cartItemId} - Remove a specific item from cart
     @DeleteMapping("/items/{cartItemId}")
+    @AdaptiveConcurrencyLimit("cart-writes")
     public ResponseEntity<Void> removeCartItem(@PathVariable Long cartItemId) {
-        cartItemService.removeCartItem(cartItemId);
+        cartService.removeCartItem(cartItemId);
         return ResponseEntity.noContent().build();
     }
 
     // DELETE /api/cart/{customerId} - Clear all items from a customer's cart
     @DeleteMapping("/{customerId}")
+    @AdaptiveConcurrencyLimit("cart-writes")
     public ResponseEntity<Void> clearCart(@PathVariable Long customerId) {
-        cartItemService.clearCart(customerId);
+        cartService.clearCart(customerId);
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,26 +1,44 @@
 package com.ecommerce.demo.controller;
+import com.ecommerce.demo.dto.CursorPage;
 import com.ecommerce.demo.dto.CustomerDto;
+import com.ecommerce.demo.dto.CustomerSuggestionDto;
 import com.ecommerce.demo.entity.Customer;
 import com.ecommerce.demo.service.CustomerService;
+import com.ecommerce.demo.service.CustomerSuggestService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+
 import java.util.List;
 @RestController
 @RequestMapping("/customers")
 public class CustomerController {
     private final CustomerService customerService;
+    private final CustomerSuggestService customerSuggestService;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, CustomerSuggestService customerSuggestService) {
         this.customerService = customerService;
+        this.customerSuggestService = customerSuggestService;
     }
 
+    // Paginated with an opaque cursor: ?size=50&sort=name, then &after={nextCursor} for the next page
     @GetMapping
-    public ResponseEntity<List<CustomerDto>> getAllCustomers() {
-        List<CustomerDto> customers = customerService.getAllCustomers();
+    public ResponseEntity<CursorPage<CustomerDto>> getCustomers(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "id") String sort) {
+        CursorPage<CustomerDto> customers = customerService.getCustomersPage(after, size, sort);
         return ResponseEntity.ok(customers);
     }
 
+    // Typeahead by name, e.g. /api/customers/suggest?prefix=ali&limit=10
+    // Any word of the name matches, ignoring case and accents; served from memory
+    @GetMapping("/suggest")
+    public ResponseEntity<List<CustomerSuggestionDto>> suggestCustomers(@RequestParam String prefix,
+                                                                        @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(customerSuggestService.suggest(prefix, limit));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<CustomerDto> getCustomerById(@PathVariable Long id) {
         CustomerDto customer = customerService.getCustomerById(id);
@@ -1,10 +1,34 @@
 package com.ecommerce.demo.controller;
+import com.ecommerce.demo.config.ReadYourWrites;
 import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.dto.ProductImportReportDto;
+import com.ecommerce.demo.dto.ProductScoreDto;
+import com.ecommerce.demo.dto.ResourceVersion;
 import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.limit.AdaptiveConcurrencyLimit;
+import com.ecommerce.demo.service.CartAnalyticsService;
+import com.ecommerce.demo.service.ProductImportService;
+import com.ecommerce.demo.service.ProductJsonCache;
+import com.ecommerce.demo.service.ProductPriceFilterService;
+import com.ecommerce.demo.service.ProductSearchService;
 import com.ecommerce.demo.service.ProductService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 // Declares the class as a REST controller, enabling automatic serialization of 
@@ -15,27 +39,167 @@ import java.util.List;
 public class ProductController {
     // The controller depends on the service layer for business logic.
     private final ProductService productService;
+    private final ProductSearchService productSearchService;
+    private final ProductPriceFilterService productPriceFilterService;
+    private final ProductImportService productImportService;
+    // Pre-serialized JSON for product lookups and pages
+    private final ProductJsonCache productJsonCache;
+    // Trending and also-carted products from the cart activity stream
+    private final CartAnalyticsService cartAnalyticsService;
+    // Reads the bodies that go with a version on the primary (see readFromPrimary)
+    private final ReadYourWrites readYourWrites;
+    // Writes the NDJSON export row by row. Rows are terminated with '\n' ourselves (instead of Jackson's
+    // default ' ' root separator), and flushing after every row is disabled so the servlet output
+    // buffer decides when bytes hit the network.
+    private final ObjectWriter exportWriter;
+    // Catalog responses may be stored by browsers and CDNs but must be revalidated on every use,
+    // which is cheap thanks to the ETag (replaces Spring Security's default no-store).
+    // They carry Vary: Accept, so a cache keeps the JSON and the CBOR/Smile copies apart.
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
     // Dependency injection
     // The ProductService is injected via the constructor, ensuring immutability and clear dependency declaration—a best practice in Spring
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductSearchService productSearchService,
+                             ProductPriceFilterService productPriceFilterService,
+                             ProductImportService productImportService, ProductJsonCache productJsonCache,
+                             CartAnalyticsService cartAnalyticsService, ReadYourWrites readYourWrites,
+                             ObjectMapper objectMapper) {
         this.productService = productService;
+        this.productSearchService = productSearchService;
+        this.productPriceFilterService = productPriceFilterService;
+        this.productImportService = productImportService;
+        this.productJsonCache = productJsonCache;
+        this.cartAnalyticsService = cartAnalyticsService;
+        this.readYourWrites = readYourWrites;
+        this.exportWriter = objectMapper.writerFor(ProductDto.class)
+                .withRootValueSeparator("")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
-    // Get all products
+    // Get products one page at a time, e.g. /api/products?sort=price&size=50
+    // Follow nextCursor from the response with /api/products?sort=price&size=50&after={nextCursor}
+    // With minPrice and/or maxPrice the results are filtered by price (cheapest first) and the
+    // response also carries totalMatches and a priceHistogram with the given number of buckets.
+    // Unfiltered pages honour If-None-Match / If-Modified-Since: while no product has changed the
+    // answer is 304 Not Modified, decided before the page is loaded or serialized. Otherwise the page
+    // is sent from the pre-serialized JSON cache while the catalog is unchanged.
     @GetMapping
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        List<ProductDto> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    @AdaptiveConcurrencyLimit("catalog-reads")
+    public ResponseEntity<?> getProducts(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Integer buckets,
+            WebRequest request) throws HttpMediaTypeNotAcceptableException {
+        if (minPrice != null || maxPrice != null) {
+            return ResponseEntity.ok(productPriceFilterService.getProductsByPrice(minPrice, maxPrice, after, size, buckets));
+        }
+        // Version first, then the page: a change in between makes the ETag older than the body, never newer.
+        // With read replicas the page is read on the primary, which is never behind the replica the version came from.
+        ResponseFormat format = ResponseFormat.negotiate(request);
+        ResourceVersion version = productService.getCatalogVersion();
+        if (request.checkNotModified(format.etag(version), version.lastModifiedMillis())) {
+            // ETag and Last-Modified are already on the response
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        if (format != ResponseFormat.JSON) {
+            return ResponseEntity.ok().cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).contentType(format.mediaType)
+                    .body(readYourWrites.readFromPrimary(() -> productService.getProductsPage(after, size, sort)));
+        }
+        byte[] products = productJsonCache.getPage(after, size, sort, version,
+                () -> readYourWrites.readFromPrimary(() -> productService.getProductsPage(after, size, sort)));
+        return ResponseEntity.ok().cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).contentType(MediaType.APPLICATION_JSON).body(products);
+    }
+
+    // Search products by name and description, best match first, e.g. /api/products/search?q=wireless head
+    // Every word is also matched as a prefix, so partial words work for search-as-you-type
+    @GetMapping("/search")
+    @AdaptiveConcurrencyLimit("catalog-reads")
+    public ResponseEntity<List<ProductDto>> searchProducts(@RequestParam String q,
+                                                           @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(productSearchService.search(q, limit));
+    }
+
+    // Products being put in carts the most right now, e.g. /api/products/trending?limit=10
+    // (recent activity counts more, see app.cart.analytics.half-life)
+    @GetMapping("/trending")
+    @AdaptiveConcurrencyLimit("catalog-reads")
+    public ResponseEntity<List<ProductScoreDto>> getTrendingProducts(@RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(cartAnalyticsService.getTrendingProducts(limit));
+    }
+
+    // Products often added to the same cart as this one, e.g. /api/products/5/also-carted?limit=5
+    // (an empty list for a product nobody has carted recently)
+    @GetMapping("/{id}/also-carted")
+    @AdaptiveConcurrencyLimit("catalog-reads")
+    public ResponseEntity<List<ProductScoreDto>> getAlsoCarted(@PathVariable Long id,
+                                                               @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(cartAnalyticsService.getAlsoCarted(id, limit));
+    }
+
+    // Export the full catalog as NDJSON (one ProductDto JSON object per line).
+    // The body is written while rows are streamed from the database, so nothing is buffered
+    // and the response starts immediately even for millions of products.
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = exportWriter.createGenerator(out)) {
+                productService.forEachProduct(product -> {
+                    try {
+                        exportWriter.writeValue(generator, product);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // Bulk import for catalog feeds: POST a CSV (Content-Type: text/csv, header row with name, price
+    // and optionally description) or NDJSON (application/x-ndjson, one {"name", "price", "description"}
+    // object per line). Rows are upserted by name while the body is still being received and committed
+    // in chunks; the response reports the counts and the rejected rows with their line numbers.
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ProductImportReportDto> importProducts(InputStream body,
+                                                                 @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        return ResponseEntity.ok(productImportService.importProducts(body, contentType));
+    }
+
+    // Progress of the running import (rows read, imported and rejected so far), or the report of the last one
+    @GetMapping("/import/status")
+    public ResponseEntity<ProductImportReportDto> getImportStatus() {
+        return ResponseEntity.ok(productImportService.getStatus());
     }
 
     // Get product by ID
     // Maps HTTP GET requests with a URL like /api/products/{id} to this method.
     @GetMapping("/{id}")
+    @AdaptiveConcurrencyLimit("catalog-reads")
     // ResponseEntity is a powerful and flexible class in Spring Framework used to represent the entire HTTP response. 
     // It allows you to control not just the response body, but also the HTTP status code and headers.
-    public ResponseEntity<ProductDto> getProductById(@PathVariable Long id) {
-        ProductDto product = productService.getProductById(id);
-        return ResponseEntity.ok(product);
+    // Honours If-None-Match / If-Modified-Since like the product list, using the product's version.
+    // For JSON clients the body is the product's cached JSON (ProductDto), written as is.
+    // As for the list, the body is read on the primary when there are read replicas.
+    public ResponseEntity<?> getProductById(@PathVariable Long id, WebRequest request)
+            throws HttpMediaTypeNotAcceptableException {
+        ResponseFormat format = ResponseFormat.negotiate(request);
+        ResourceVersion version = productService.getProductVersion(id);
+        if (request.checkNotModified(format.etag(version), version.lastModifiedMillis())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        if (format != ResponseFormat.JSON) {
+            return ResponseEntity.ok().cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).contentType(format.mediaType)
+                    .body(readYourWrites.readFromPrimary(() -> productService.getProductById(id)));
+        }
+        byte[] product = productJsonCache.getProduct(id, version,
+                () -> readYourWrites.readFromPrimary(() -> productService.getProductById(id)));
+        return ResponseEntity.ok().cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).contentType(MediaType.APPLICATION_JSON).body(product);
     }
 
    // Create a new product
@@ -58,4 +222,4 @@ public class ProductController {
         productService.deleteProduct(id);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+}
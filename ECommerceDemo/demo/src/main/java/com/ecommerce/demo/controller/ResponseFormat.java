@@ -0,0 +1,58 @@
+package com.ecommerce.demo.controller;
+
+import com.ecommerce.demo.dto.ResourceVersion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// The formats conditional reads (products, carts) come in, in the order a wildcard Accept picks them
+// (see MessageConverterConfig). Each has its own strong ETag: the bytes differ, so a JSON ETag must
+// never validate a CBOR copy.
+enum ResponseFormat {
+    JSON(MediaType.APPLICATION_JSON, ""),
+    CBOR(MediaType.APPLICATION_CBOR, "-cbor"),
+    SMILE(new MediaType("application", "x-jackson-smile"), "-smile");
+
+    final MediaType mediaType;
+    private final String etagSuffix;
+
+    ResponseFormat(MediaType mediaType, String etagSuffix) {
+        this.mediaType = mediaType;
+        this.etagSuffix = etagSuffix;
+    }
+
+    String etag(ResourceVersion version) {
+        return version.etag() + etagSuffix;
+    }
+
+    // Picks the format before anything is loaded, because the ETag depends on it. The response then
+    // gets its content type set to the format chosen here, so Spring can't pick a different one.
+    // Mirrors Spring's content negotiation: highest quality first, then a concrete type before a wildcard,
+    // and the first format a wildcard (or no Accept header) covers. Nothing acceptable is a 406, as it would be.
+    static ResponseFormat negotiate(WebRequest request) throws HttpMediaTypeNotAcceptableException {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            throw new HttpMediaTypeNotAcceptableException("Could not parse Accept header: " + e.getMessage());
+        }
+        return accepted.stream()
+                .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed()
+                        .thenComparing(type -> type.isWildcardType() || type.isWildcardSubtype()))
+                .filter(type -> type.getQualityValue() > 0)
+                .flatMap(type -> Stream.of(values()).filter(format -> type.includes(format.mediaType)))
+                .findFirst()
+                .orElseThrow(() -> new HttpMediaTypeNotAcceptableException(
+                        Stream.of(values()).map(format -> format.mediaType).toList()));
+    }
+}
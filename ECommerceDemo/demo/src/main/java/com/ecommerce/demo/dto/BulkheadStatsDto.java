@@ -0,0 +1,14 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkheadStatsDto {
+    private int maxPermits; // Connections that can be in use at once
+    private int availablePermits;
+    private int queueLength; // Threads currently waiting for a permit (estimate)
+    private long acquired;
+    private long timeouts; // Waits that gave up after app.db.bulkhead.acquire-timeout-ms
+    private double averageQueueMillis;
+    private double maxQueueMillis;
+}
@@ -0,0 +1,13 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheRegionStatsDto {
+    private String region; // Second-level cache region, e.g. "products" or "default-query-results-region"
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions; // Entries dropped by the size bound or the TTL
+    private float hitPercentage;
+}
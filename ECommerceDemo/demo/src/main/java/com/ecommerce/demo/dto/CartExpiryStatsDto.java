@@ -0,0 +1,19 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class CartExpiryStatsDto {
+    private String idleTtl; // Carts unchanged for longer than this are deleted (ISO-8601 duration)
+    private long runs;
+    private long totalCartsExpired;
+    private long totalRowsDeleted;
+    private Instant lastRunStartedAt; // Null until the first run
+    private long lastRunMillis;
+    private long lastRunCarts;
+    private long lastRunRows;
+    private int lastRunBatches;
+    private long lastRunThrottledMillis; // Time spent pausing between batches to stay under the rate limit
+}
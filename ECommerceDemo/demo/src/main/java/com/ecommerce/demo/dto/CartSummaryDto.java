@@ -0,0 +1,22 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+@Data
+public class CartSummaryDto {
+    private Long customerId;
+    private long lineCount; // Number of distinct products in the cart
+    private long totalQuantity; // Sum of all quantities
+    private double subtotal; // Sum of quantity * price over all lines
+
+    public CartSummaryDto() {
+    }
+
+    // Used by the JPQL constructor expression in CartItemRepository.summarizeByCustomerId
+    public CartSummaryDto(Long customerId, Long lineCount, Long totalQuantity, Double subtotal) {
+        this.customerId = customerId;
+        this.lineCount = lineCount;
+        this.totalQuantity = totalQuantity;
+        this.subtotal = subtotal;
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CursorPage<T> {
+    private List<T> items;
+    private int size; // Number of items in this page
+    private String nextCursor; // Pass as ?after= to get the next page; null when this is the last page
+
+    public CursorPage() {
+    }
+
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.size = items.size();
+        this.nextCursor = nextCursor;
+    }
+}
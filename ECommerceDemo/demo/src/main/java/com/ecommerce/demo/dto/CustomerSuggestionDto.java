@@ -0,0 +1,15 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+// One typeahead match: just enough to show in a dropdown and open the customer
+@Data
+public class CustomerSuggestionDto {
+    private Long id;
+    private String name;
+
+    public CustomerSuggestionDto(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+@Data
+public class ImportErrorDto {
+    private long line; // Line of the upload the row starts on (1 = first line, the CSV header)
+    private String message;
+
+    public ImportErrorDto(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+@Data
+public class PriceBucketDto {
+    private double from; // Inclusive
+    private double to; // Exclusive, except for the last bucket which includes the maximum price
+    private int count;
+
+    public PriceBucketDto() {
+    }
+
+    public PriceBucketDto(double from, double to, int count) {
+        this.from = from;
+        this.to = to;
+        this.count = count;
+    }
+}
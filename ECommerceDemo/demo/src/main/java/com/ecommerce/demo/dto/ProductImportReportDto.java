@@ -0,0 +1,20 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class ProductImportReportDto {
+    private String status; // RUNNING, COMPLETED or FAILED
+    private String format; // csv or ndjson
+    private Instant startedAt;
+    private Instant finishedAt; // Null while running
+    private long rowsRead;
+    private long rowsImported; // Inserted or updated, committed
+    private long rowsFailed;
+    private long chunksCommitted;
+    private String failure; // Why a FAILED import stopped; rows of committed chunks stay imported
+    private List<ImportErrorDto> errors; // Rejected rows, at most app.products.import.max-reported-errors
+}
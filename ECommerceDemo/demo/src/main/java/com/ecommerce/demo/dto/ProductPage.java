@@ -0,0 +1,23 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+// A page of price-filtered products, plus facet data for the whole filtered range
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class ProductPage extends CursorPage<ProductDto> {
+    private int totalMatches; // Products in the price range, across all pages
+    private List<PriceBucketDto> priceHistogram; // Equal-width price buckets over the range
+
+    public ProductPage() {
+    }
+
+    public ProductPage(List<ProductDto> items, String nextCursor, int totalMatches, List<PriceBucketDto> priceHistogram) {
+        super(items, nextCursor);
+        this.totalMatches = totalMatches;
+        this.priceHistogram = priceHistogram;
+    }
+}
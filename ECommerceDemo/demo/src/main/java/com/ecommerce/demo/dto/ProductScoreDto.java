@@ -0,0 +1,22 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+// A product with a ranking score, e.g. for GET /products/trending and /products/{id}/also-carted
+@Data
+public class ProductScoreDto {
+    private Long id;
+    private String name;
+    private Double price;
+    private double score; // Decayed count: recent cart activity weighs more than old
+
+    public ProductScoreDto() {
+    }
+
+    public ProductScoreDto(ProductDto product, double score) {
+        this.id = product.getId();
+        this.name = product.getName();
+        this.price = product.getPrice();
+        this.score = score;
+    }
+}
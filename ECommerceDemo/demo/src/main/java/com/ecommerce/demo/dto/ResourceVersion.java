@@ -0,0 +1,38 @@
+package com.ecommerce.demo.dto;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+// What a conditional GET is compared against: the strong ETag and the Last-Modified time of a resource.
+// Controllers pass both to WebRequest.checkNotModified before loading the resource itself, so an
+// unchanged resource costs one cheap lookup and no serialization (304 Not Modified, empty body).
+// lastModified is null for an empty collection.
+public record ResourceVersion(String etag, Instant lastModified) {
+
+    // Version of a collection, from an aggregate query over its rows: an insert or delete changes
+    // the row count and any write moves lastModified forward
+    public ResourceVersion(Long rows, Instant lastModified) {
+        this(rows + "-" + micros(lastModified), lastModified);
+    }
+
+    // Same, plus the sum of the row versions, which also changes when two writes share a timestamp
+    public ResourceVersion(Long rows, Long versionSum, Instant lastModified) {
+        this(rows + "-" + (versionSum == null ? 0 : versionSum) + "-" + micros(lastModified), lastModified);
+    }
+
+    // Version of a table whose ids are never reused: with the largest id, the ETag changes on every insert
+    // even when a delete keeps the row count and the version sum where they were
+    public ResourceVersion(Long rows, Long maxId, Long versionSum, Instant lastModified) {
+        this(rows + "-" + (maxId == null ? 0 : maxId) + "-" + (versionSum == null ? 0 : versionSum) + "-"
+                + micros(lastModified), lastModified);
+    }
+
+    // Last-Modified in epoch millis as WebRequest.checkNotModified expects it; -1 means unknown
+    public long lastModifiedMillis() {
+        return lastModified == null ? -1 : lastModified.toEpochMilli();
+    }
+
+    private static long micros(Instant instant) {
+        return instant == null ? 0 : ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+}
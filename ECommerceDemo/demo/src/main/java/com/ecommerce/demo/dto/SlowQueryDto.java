@@ -0,0 +1,27 @@
+package com.ecommerce.demo.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class SlowQueryDto {
+    private Instant executedAt;
+    private double durationMillis;
+    private String sql; // Shortened to 2000 characters
+    private int bindCount; // Bind parameters sent, over all rows of a batch
+    private int batchSize; // 1 unless the statement was a JDBC batch
+    private String caller; // First application frame on the stack, e.g. CartItemService.getCartItemsByCustomer:71
+    private boolean sampled; // Faster than the threshold, kept by app.sql.slow-query.sample-rate
+
+    public SlowQueryDto(Instant executedAt, double durationMillis, String sql, int bindCount, int batchSize,
+                        String caller, boolean sampled) {
+        this.executedAt = executedAt;
+        this.durationMillis = durationMillis;
+        this.sql = sql;
+        this.bindCount = bindCount;
+        this.batchSize = batchSize;
+        this.caller = caller;
+        this.sampled = sampled;
+    }
+}
@@ -1,12 +1,23 @@
 package com.ecommerce.demo.entity;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+
 @Data
 @Entity
-@Table(name = "cart_items") // Explicitly names the table
+@Table(name = "cart_items", uniqueConstraints = // Explicitly names the table
+        // One line per product per customer; CartItemRepository.upsertQuantity relies on this key
+        @UniqueConstraint(name = "uk_cart_items_customer_product", columnNames = {"customer_id", "product_id"}))
 public class CartItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence instead of IDENTITY: Hibernate reserves 50 ids per database call and can then
+    // group cart item INSERTs into JDBC batches (IDENTITY forces one INSERT round trip per row)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_items_seq")
+    @SequenceGenerator(name = "cart_items_seq", sequenceName = "cart_items_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY) // Many cart items can belong to one product
@@ -18,4 +29,23 @@ public class CartItem {
     private Customer customer;
 
     private int quantity;
+
+    // Same as on Product. Native writes (CartItemRepository.upsertQuantity, the write-behind flush)
+    // bump version and updated_at themselves, since Hibernate does not see them.
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
+    // When the line was first added. The defaults fill both timestamps for native INSERTs.
+    @CreationTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    // Last change to the line. The newest updated_at of a cart tells CartExpiryService whether it was abandoned.
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
 }
\ No newline at end of file
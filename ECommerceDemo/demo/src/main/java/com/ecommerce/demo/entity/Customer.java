@@ -1,9 +1,17 @@
 package com.ecommerce.demo.entity;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 @Data
 @Entity // Marks this class as a JPA entity
-@Table(name = "customers") // Explicitly names the table
+@Cacheable // Kept in the "customers" second-level cache region (see application.conf)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "customers")
+@Table(name = "customers", indexes = { // Explicitly names the table
+        @Index(name = "idx_customers_name_id", columnList = "name, id") // Backs keyset pagination by name
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_customers_email", columnNames = "email") // One account per email; also indexes lookups by email
+})
 public class Customer {
     @Id // Marks this field as the primary key
     @GeneratedValue(strategy = GenerationType.IDENTITY) // Auto-increments ID
@@ -1,9 +1,24 @@
 package com.ecommerce.demo.entity;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+
 @Data
 @Entity
-@Table(name = "products")
+@Cacheable // Kept in the "products" second-level cache region (see application.conf)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "products")
+@Table(name = "products", uniqueConstraints =
+        // The catalog key of bulk imports: ProductImportService upserts on it
+        @UniqueConstraint(name = "uk_products_name", columnNames = "name"), indexes = {
+        // Back the keyset pagination queries in ProductRepository
+        @Index(name = "idx_products_price_id", columnList = "price, id"),
+        @Index(name = "idx_products_name_id", columnList = "name, id")
+})
 public class Product {
     @Id 
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -11,4 +26,17 @@ public class Product {
     private String name;
     private double price;
     private String description;
+
+    // Bumped by Hibernate on every update (optimistic locking); ETags of products are built from it.
+    // The column defaults cover rows inserted with plain SQL (data.sql, bulk loads).
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
+    // Time of the last insert or update, sent as Last-Modified
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.ecommerce.demo.event;
+
+// Published by the CartService implementations for every change to a cart: quantity of a product added,
+// quantity taken out again (a lower quantity, or the whole line when lineRemoved), or the whole cart cleared.
+// Feeds CartAnalyticsService; listeners use @TransactionalEventListener(fallbackExecution = true),
+// as the write-behind cart publishes outside any transaction.
+public record CartActivityEvent(Type type, Long customerId, Long productId, int quantity, boolean lineRemoved) {
+
+    public enum Type { ADDED, REMOVED, CLEARED }
+
+    public static CartActivityEvent added(Long customerId, Long productId, int quantity) {
+        return new CartActivityEvent(Type.ADDED, customerId, productId, quantity, false);
+    }
+
+    // lineRemoved: the product is no longer in the cart at all
+    public static CartActivityEvent removed(Long customerId, Long productId, int quantity, boolean lineRemoved) {
+        return new CartActivityEvent(Type.REMOVED, customerId, productId, quantity, lineRemoved);
+    }
+
+    // Cleared carts carry no product
+    public static CartActivityEvent cleared(Long customerId) {
+        return new CartActivityEvent(Type.CLEARED, customerId, null, 0, true);
+    }
+}
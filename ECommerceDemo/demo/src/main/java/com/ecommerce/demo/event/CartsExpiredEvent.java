@@ -0,0 +1,9 @@
+package com.ecommerce.demo.event;
+
+import java.time.Instant;
+import java.util.List;
+
+// Published by CartExpiryService after each committed batch: the lines of these customers' carts were deleted
+// because none of them had changed since idleSince. A cart that did change meanwhile was left alone.
+public record CartsExpiredEvent(List<Long> customerIds, Instant idleSince) {
+}
@@ -0,0 +1,30 @@
+package com.ecommerce.demo.event;
+
+import com.ecommerce.demo.dto.CustomerDto;
+
+// Published by CustomerService whenever a customer is created, updated or deleted.
+// In-memory views of the customers (e.g. the name typeahead) listen for it with
+// @TransactionalEventListener, so they only see changes that were actually committed.
+public record CustomerChangedEvent(Type type, CustomerDto customer) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    public static CustomerChangedEvent created(CustomerDto customer) {
+        return new CustomerChangedEvent(Type.CREATED, customer);
+    }
+
+    public static CustomerChangedEvent updated(CustomerDto customer) {
+        return new CustomerChangedEvent(Type.UPDATED, customer);
+    }
+
+    // Deleted customers only carry their id
+    public static CustomerChangedEvent deleted(Long customerId) {
+        CustomerDto customer = new CustomerDto();
+        customer.setId(customerId);
+        return new CustomerChangedEvent(Type.DELETED, customer);
+    }
+
+    public Long customerId() {
+        return customer.getId();
+    }
+}
@@ -0,0 +1,7 @@
+package com.ecommerce.demo.event;
+
+// Published by ProductImportService after a bulk import has written products with plain JDBC.
+// No ProductChangedEvents are published for imported rows, so in-memory views of the catalog
+// rebuild or refresh themselves from the database when they receive this event.
+public record ProductCatalogImportedEvent(long rowsImported) {
+}
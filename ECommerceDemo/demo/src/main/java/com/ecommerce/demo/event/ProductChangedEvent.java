@@ -0,0 +1,30 @@
+package com.ecommerce.demo.event;
+
+import com.ecommerce.demo.dto.ProductDto;
+
+// Published by ProductService whenever a product is created, updated or deleted.
+// In-memory views of the catalog (e.g. the search index) listen for it with
+// @TransactionalEventListener, so they only see changes that were actually committed.
+public record ProductChangedEvent(Type type, ProductDto product) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    public static ProductChangedEvent created(ProductDto product) {
+        return new ProductChangedEvent(Type.CREATED, product);
+    }
+
+    public static ProductChangedEvent updated(ProductDto product) {
+        return new ProductChangedEvent(Type.UPDATED, product);
+    }
+
+    // Deleted products only carry their id
+    public static ProductChangedEvent deleted(Long productId) {
+        ProductDto product = new ProductDto();
+        product.setId(productId);
+        return new ProductChangedEvent(Type.DELETED, product);
+    }
+
+    public Long productId() {
+        return product.getId();
+    }
+}
@@ -0,0 +1,119 @@
+package com.ecommerce.demo.index;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bloom filter over strings: answers "definitely not added" or "maybe added" from a fixed bit array.
+// There are no false negatives, so a negative answer can skip the database lookup it stands in front of;
+// a positive answer only means "go and check". Entries cannot be removed, a stale bit just costs one lookup.
+//
+// The bit array is sized from the expected number of entries and the false-positive rate we want,
+// but never larger than maxBytes. If the cap kicks in, or more entries are added than expected,
+// the filter keeps working and the false-positive rate goes up (see expectedFalsePositiveRate()).
+//
+// Thread-safe without locks: bits are set with compare-and-set on an AtomicLongArray, and a bit once set
+// is never cleared, so a reader sees every bit that was set before its put() returned.
+public final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+    private static final int MAX_HASHES = 16;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate, long maxBytes) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        if (maxBytes < Long.BYTES) {
+            throw new IllegalArgumentException("maxBytes must be at least " + Long.BYTES);
+        }
+        // Optimal size m = -n ln p / (ln 2)^2, capped by the memory budget (and by what one array can hold)
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2));
+        long maxWords = Math.min(maxBytes / Long.BYTES, Integer.MAX_VALUE - 8);
+        int wordCount = (int) Math.max(1, Math.min(maxWords, (optimalBits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        // Optimal number of hashes k = m/n ln 2 for the size we actually got
+        this.hashCount = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) bitCount / expectedInsertions * LN2)));
+    }
+
+    public void put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1; // Odd, so the probe sequence does not repeat early
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            setBit((int) (bit >>> 6), 1L << bit);
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    // Number of put() calls, duplicates included
+    public long insertions() {
+        return insertions.get();
+    }
+
+    // Estimated false-positive rate for the entries added so far: (1 - e^(-kn/m))^k
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions.get() / bitCount), hashCount);
+    }
+
+    private void setBit(int word, long mask) {
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return; // Already set, the common case once the filter fills up
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars, finished with a mixer so that every bit depends on every char.
+    // (String.hashCode() is only 32 bits, too few for two independent probe hashes on a large filter.)
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3 fmix64
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB93FE1A85EC9L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
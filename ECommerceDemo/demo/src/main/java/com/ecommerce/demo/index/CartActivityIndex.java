@@ -0,0 +1,227 @@
+package com.ecommerce.demo.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Streaming view of cart activity for "trending in carts" and "often added together", with memory
+// bounded by the configuration rather than by the number of products, customers or cart lines:
+//
+// - trending: one SpaceSavingTopK over product ids, weighted by the quantity added (explicit removals take it back)
+// - also-carted: per product, a SpaceSavingTopK over the products added to the same cart around the same time.
+//   Only the most recently active `trackedProducts` products keep such a list (LRU).
+// - recent carts: the last `recentCartSize` products each customer added, which is what a new add pairs with.
+//   Forgotten after `sessionWindowNanos` without activity, and only the most recent `trackedCustomers` are kept.
+//
+// Time decay uses forward decay: an event at time t weighs e^(λ(t - landmark)) instead of 1, and reading
+// divides by e^(λ(now - landmark)). That is the same as halving every count each half-life, without touching
+// the counters on the way. When the weights get large, every summary is rescaled once and the landmark moves up.
+//
+// All methods take the current time (System.nanoTime()) so tests can run the clock. Thread-safe, one lock.
+public class CartActivityIndex {
+    // Rescale before weights grow beyond this (2^40); doubles keep plenty of precision below it
+    private static final double MAX_WEIGHT = 0x1p40;
+
+    private final int capacity;
+    private final int neighbors;
+    private final int recentCartSize;
+    private final long sessionWindowNanos;
+    private final double decayPerNano;
+
+    private final SpaceSavingTopK trending;
+    private final LinkedHashMap<Long, SpaceSavingTopK> alsoCarted;
+    private final LinkedHashMap<Long, RecentCart> recentCarts;
+    private long landmarkNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public record Scored(long productId, double score) {
+    }
+
+    private static final class RecentCart {
+        final long[] productIds;
+        int size;
+        long lastActivityNanos;
+
+        RecentCart(int capacity) {
+            this.productIds = new long[capacity];
+        }
+
+        boolean contains(long productId) {
+            for (int i = 0; i < size; i++) {
+                if (productIds[i] == productId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Newest last; the oldest falls out once full
+        void add(long productId) {
+            if (size == productIds.length) {
+                System.arraycopy(productIds, 1, productIds, 0, size - 1);
+                size--;
+            }
+            productIds[size++] = productId;
+        }
+
+        void remove(long productId) {
+            for (int i = 0; i < size; i++) {
+                if (productIds[i] == productId) {
+                    System.arraycopy(productIds, i + 1, productIds, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+    }
+
+    public CartActivityIndex(int capacity, int neighbors, int trackedProducts, int recentCartSize,
+                             int trackedCustomers, long sessionWindowNanos, long halfLifeNanos, long nowNanos) {
+        this.capacity = capacity;
+        this.neighbors = neighbors;
+        this.recentCartSize = recentCartSize;
+        this.sessionWindowNanos = sessionWindowNanos;
+        this.decayPerNano = Math.log(2) / halfLifeNanos;
+        this.trending = new SpaceSavingTopK(capacity);
+        this.alsoCarted = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SpaceSavingTopK> eldest) {
+                return size() > trackedProducts;
+            }
+        };
+        this.recentCarts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, RecentCart> eldest) {
+                return size() > trackedCustomers;
+            }
+        };
+        this.landmarkNanos = nowNanos;
+    }
+
+    // The customer put quantity more of the product in their cart
+    public void added(long customerId, long productId, int quantity, long nowNanos) {
+        if (quantity <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            double weight = weight(nowNanos);
+            trending.add(productId, quantity * weight);
+
+            RecentCart cart = recentCarts.get(customerId);
+            if (cart == null || nowNanos - cart.lastActivityNanos > sessionWindowNanos) {
+                cart = new RecentCart(recentCartSize);
+                recentCarts.put(customerId, cart);
+            }
+            cart.lastActivityNanos = nowNanos;
+            if (cart.contains(productId)) {
+                return; // More of the same product: its pairs were counted when it was first added
+            }
+            for (int i = 0; i < cart.size; i++) {
+                long other = cart.productIds[i];
+                alsoCartedOf(productId).add(other, weight);
+                alsoCartedOf(other).add(productId, weight);
+            }
+            cart.add(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The customer took quantity of the product out of their cart; lineRemoved when none of it is left.
+    // Only then does it leave the recent cart: after a partial removal the product is still in the cart,
+    // and adding more of it again must not count its pairs a second time.
+    public void removed(long customerId, long productId, int quantity, boolean lineRemoved, long nowNanos) {
+        lock.lock();
+        try {
+            if (quantity > 0) {
+                trending.subtract(productId, quantity * weight(nowNanos));
+            }
+            RecentCart cart = recentCarts.get(customerId);
+            if (cart != null && lineRemoved) {
+                cart.remove(productId); // So later adds do not pair with it
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The cart was emptied (e.g. checked out): later adds start a new cart
+    public void cleared(long customerId) {
+        lock.lock();
+        try {
+            recentCarts.remove(customerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forgets a deleted product everywhere. Pair lists are not symmetric (each evicts on its own), so the
+    // product's own list does not say which others still hold it: every list and recent cart is scanned.
+    // That is O(tracked products + tracked customers), fine for something as rare as deleting a product.
+    public void removeProduct(long productId) {
+        lock.lock();
+        try {
+            trending.remove(productId);
+            alsoCarted.remove(productId);
+            alsoCarted.values().forEach(pairs -> pairs.remove(productId)); // Iterating does not change the LRU order
+            recentCarts.values().forEach(cart -> cart.remove(productId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Most carted products, by quantity added with decay; only products whose count is certain to be above 0
+    public List<Scored> trending(int limit, long nowNanos) {
+        lock.lock();
+        try {
+            return scored(trending, limit, nowNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Products most often added to the same cart as productId
+    public List<Scored> alsoCarted(long productId, int limit, long nowNanos) {
+        lock.lock();
+        try {
+            SpaceSavingTopK pairs = alsoCarted.get(productId);
+            return pairs == null ? List.of() : scored(pairs, limit, nowNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Scored> scored(SpaceSavingTopK summary, int limit, long nowNanos) {
+        double weight = weight(nowNanos);
+        List<Scored> result = new ArrayList<>(limit);
+        for (SpaceSavingTopK.Entry entry : summary.top(capacity)) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (entry.guaranteed() > 0) {
+                result.add(new Scored(entry.key(), entry.count() / weight));
+            }
+        }
+        return result;
+    }
+
+    private SpaceSavingTopK alsoCartedOf(long productId) {
+        return alsoCarted.computeIfAbsent(productId, id -> new SpaceSavingTopK(neighbors));
+    }
+
+    // Forward-decay weight of an event now; caller holds the lock
+    private double weight(long nowNanos) {
+        double weight = Math.exp(decayPerNano * (nowNanos - landmarkNanos));
+        if (weight > MAX_WEIGHT) {
+            double factor = 1 / weight;
+            trending.scale(factor);
+            alsoCarted.values().forEach(pairs -> pairs.scale(factor));
+            landmarkNanos = nowNanos;
+            weight = 1;
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,415 @@
+package com.ecommerce.demo.index;
+
+import com.ecommerce.demo.dto.CustomerSuggestionDto;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// In-memory typeahead over customer names: a radix trie (runs of single-child nodes are collapsed
+// into one node with a multi-character label) in which every node caches the best k customers of its subtree.
+// A lookup walks down the prefix and returns the cached list, so its cost depends on the length of the
+// prefix, not on how many customers match it.
+//
+// Names are normalized (accents stripped, lowercase, punctuation as spaces) and indexed once per word,
+// so "smi" finds "Alice Smith" as well as "Smits, Bob". Matches are ranked alphabetically by the
+// indexed key, then by id, which puts exact and shorter names first. A customer whose words match
+// more than once ("Ann Annable") is ranked by its best key and holds one place in a cached list, not
+// one per word, so a lookup always finds as many customers as there are (up to k).
+//
+// Writes keep the cached lists up to date along the path they touch: an insert offers the new entry
+// to each node on its path (replacing a worse entry of the same customer), a removal recomputes a node's list from its children only if the removed
+// entry was in it. Reads share a read lock and can run in parallel; put/remove take the write lock.
+public class CustomerNameTrie {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Only the first few words of a name get their own key, which bounds the memory per customer
+    private static final int MAX_WORDS = 4;
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final int topK;
+    private final Node root = new Node("", 0, 0);
+    private final Map<Long, Entry[]> entriesById = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // One indexed key of a customer (the normalized name from one of its words on)
+    private record Entry(long id, String name, String key) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byKey = key.compareTo(other.key);
+            return byKey != 0 ? byKey : Long.compare(id, other.id);
+        }
+    }
+
+    // The label is not a String of its own but the characters [from, to) of a key that runs through
+    // this node, where from and to are depths in the trie. That saves an object per node, which adds up
+    // over millions of names. entries and top are never modified in place, only replaced,
+    // so a leaf can share one array for both.
+    private static final class Node {
+        private String key;
+        private int from;
+        private int to;
+        private Node[] children = NO_CHILDREN; // Sorted by the first character of their label
+        private Entry[] entries = NO_ENTRIES;  // Keys that end at this node, sorted
+        private Entry[] top = NO_ENTRIES;      // Best entry of each of the best topK customers of the subtree, sorted
+
+        private Node(String key, int from, int to) {
+            this.key = key;
+            this.from = from;
+            this.to = to;
+        }
+
+        private int labelLength() {
+            return to - from;
+        }
+
+        private char labelAt(int i) {
+            return key.charAt(from + i);
+        }
+    }
+
+    public CustomerNameTrie(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive");
+        }
+        this.topK = topK;
+    }
+
+    // Lowercase, without accents, with every run of non-alphanumerics turned into one space.
+    // Trailing space is kept for prefixes, so "ann " only matches names with a word "ann".
+    public static String normalize(String text, boolean keepTrailingSpace) {
+        if (isSimple(text, keepTrailingSpace)) {
+            return text.toLowerCase(Locale.ROOT); // Already normalized apart from case, the common case
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        String spaced = SEPARATORS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return keepTrailingSpace ? spaced.stripLeading() : spaced.strip();
+    }
+
+    // The most results one lookup can return
+    public int topK() {
+        return topK;
+    }
+
+    // Add a customer, or replace the indexed name if it is already present
+    public void put(long id, String name) {
+        Entry[] entries = entriesFor(id, name);
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            for (Entry entry : entries) {
+                insert(entry);
+            }
+            if (entries.length > 0) {
+                entriesById.put(id, entries);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entriesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit (at most topK) customers with a name word starting with prefix, best first
+    public List<CustomerSuggestionDto> suggest(String prefix, int limit) {
+        String key = normalize(prefix, true);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        int maxResults = Math.min(limit, topK);
+        lock.readLock().lock();
+        try {
+            Node node = find(key);
+            if (node == null) {
+                return List.of();
+            }
+            // One entry per customer already
+            List<CustomerSuggestionDto> results = new ArrayList<>(maxResults);
+            for (int i = 0; i < node.top.length && i < maxResults; i++) {
+                results.add(new CustomerSuggestionDto(node.top[i].id(), node.top[i].name()));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Only ASCII letters and digits, separated by single spaces
+    private static boolean isSimple(String text, boolean keepTrailingSpace) {
+        int length = text.length();
+        if (length == 0 || text.charAt(0) == ' ' || (!keepTrailingSpace && text.charAt(length - 1) == ' ')) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            boolean alphanumeric = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (!alphanumeric && (c != ' ' || text.charAt(i - 1) == ' ')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Entry[] entriesFor(long id, String name) {
+        String normalized = name == null ? "" : normalize(name, false);
+        if (normalized.isEmpty()) {
+            return NO_ENTRIES;
+        }
+        List<Entry> entries = new ArrayList<>();
+        entries.add(new Entry(id, name, normalized));
+        for (int i = normalized.indexOf(' '); i >= 0 && entries.size() < MAX_WORDS; i = normalized.indexOf(' ', i + 1)) {
+            entries.add(new Entry(id, name, normalized.substring(i + 1)));
+        }
+        return entries.toArray(NO_ENTRIES);
+    }
+
+    // The node whose subtree holds exactly the keys starting with prefix
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int slot = findChild(node, prefix.charAt(i));
+            if (slot < 0) {
+                return null;
+            }
+            Node child = node.children[slot];
+            int common = commonPrefixLength(child, prefix, i);
+            if (i + common == prefix.length()) {
+                return child; // The prefix ends on or inside this label
+            }
+            if (common < child.labelLength()) {
+                return null;
+            }
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    private void insert(Entry entry) {
+        String key = entry.key();
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int slot = findChild(node, key.charAt(i));
+            if (slot < 0) {
+                Node leaf = new Node(key, i, key.length());
+                node.children = insertChild(node.children, -slot - 1, leaf);
+                node = leaf;
+                path.add(leaf);
+                break;
+            }
+            Node child = node.children[slot];
+            int common = commonPrefixLength(child, key, i);
+            if (common < child.labelLength()) {
+                // The key leaves this label part-way: split it, the new node takes over the shared part
+                Node middle = new Node(child.key, child.from, child.from + common);
+                child.from += common;
+                middle.children = new Node[]{child};
+                middle.top = child.top;
+                node.children[slot] = middle;
+                child = middle;
+            }
+            node = child;
+            path.add(child);
+            i += common;
+        }
+        node.entries = offer(node.entries, entry, Integer.MAX_VALUE);
+        for (Node onPath : path) {
+            // A small leaf: its entries are its best entries (all of one key, so all of different customers)
+            onPath.top = onPath.children.length == 0 && onPath.entries.length <= topK
+                    ? onPath.entries
+                    : offerBestOfCustomer(onPath.top, entry, topK);
+        }
+    }
+
+    private void removeLocked(long id) {
+        Entry[] entries = entriesById.remove(id);
+        if (entries != null) {
+            for (Entry entry : entries) {
+                delete(entry);
+            }
+        }
+    }
+
+    private void delete(Entry entry) {
+        String key = entry.key();
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int slot = findChild(node, key.charAt(i));
+            if (slot < 0 || commonPrefixLength(node.children[slot], key, i) < node.children[slot].labelLength()) {
+                return;
+            }
+            node = node.children[slot];
+            path.add(node);
+            i += node.labelLength();
+        }
+        node.entries = without(node.entries, entry);
+
+        // Bottom-up: drop nodes that became empty, fold a node into its only child once it no longer
+        // branches, and refill the cached lists that contained the removed entry
+        for (int depth = path.size() - 1; depth >= 1; depth--) {
+            Node current = path.get(depth);
+            if (current.entries.length == 0 && current.children.length == 0) {
+                Node parent = path.get(depth - 1);
+                parent.children = removeChild(parent.children, current);
+            } else if (current.entries.length == 0 && current.children.length == 1) {
+                // The remaining child is off the removed entry's path, so its cached list is still right
+                // (the merged label runs from this node's start to the end of the child's, along the child's key)
+                Node only = current.children[0];
+                current.key = only.key;
+                current.to = only.to;
+                current.children = only.children;
+                current.entries = only.entries;
+                current.top = only.top;
+            } else if (contains(current.top, entry)) {
+                current.top = bestOf(current);
+            }
+        }
+        if (contains(root.top, entry)) {
+            root.top = bestOf(root);
+        }
+    }
+
+    // The node's best topK customers, from its own entries and its children's cached lists.
+    // A customer's best entry in the subtree is in one of those lists if it makes the cut at all.
+    private Entry[] bestOf(Node node) {
+        List<Entry> candidates = new ArrayList<>();
+        for (int i = 0; i < node.entries.length && i < topK; i++) {
+            candidates.add(node.entries[i]);
+        }
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        Collections.sort(candidates);
+        List<Entry> best = new ArrayList<>(topK);
+        Set<Long> customers = new HashSet<>();
+        for (Entry candidate : candidates) {
+            if (customers.add(candidate.id())) { // Sorted, so the first one of a customer is its best
+                best.add(candidate);
+                if (best.size() == topK) {
+                    break;
+                }
+            }
+        }
+        return best.toArray(NO_ENTRIES);
+    }
+
+    // Like offer, for a cached list that holds one entry per customer: the entry takes the place of the
+    // customer's current one if it is better, and is dropped if it is not
+    private static Entry[] offerBestOfCustomer(Entry[] sorted, Entry entry, int max) {
+        for (Entry current : sorted) {
+            if (current.id() == entry.id()) {
+                return current.compareTo(entry) <= 0 ? sorted : offer(without(sorted, current), entry, max);
+            }
+        }
+        return offer(sorted, entry, max);
+    }
+
+    // A copy of sorted with entry inserted in order and cut to at most max entries (or sorted itself if entry misses the cut)
+    private static Entry[] offer(Entry[] sorted, Entry entry, int max) {
+        int position = Arrays.binarySearch(sorted, entry);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        if (position >= max) {
+            return sorted;
+        }
+        Entry[] result = new Entry[Math.min(sorted.length + 1, max)];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = entry;
+        System.arraycopy(sorted, position, result, position + 1, result.length - position - 1);
+        return result;
+    }
+
+    private static Entry[] without(Entry[] sorted, Entry entry) {
+        int position = Arrays.binarySearch(sorted, entry);
+        if (position < 0) {
+            return sorted;
+        }
+        Entry[] result = new Entry[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, result.length - position);
+        return result.length == 0 ? NO_ENTRIES : result;
+    }
+
+    private static boolean contains(Entry[] entries, Entry entry) {
+        for (Entry candidate : entries) {
+            if (candidate == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Index of the child whose label starts with c, or -(insertion point) - 1
+    private static int findChild(Node node, char c) {
+        Node[] children = node.children;
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char first = children[mid].labelAt(0);
+            if (first < c) {
+                low = mid + 1;
+            } else if (first > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    private static Node[] insertChild(Node[] children, int position, Node child) {
+        Node[] result = new Node[children.length + 1];
+        System.arraycopy(children, 0, result, 0, position);
+        result[position] = child;
+        System.arraycopy(children, position, result, position + 1, children.length - position);
+        return result;
+    }
+
+    private static Node[] removeChild(Node[] children, Node child) {
+        int position = Arrays.asList(children).indexOf(child);
+        if (position < 0) {
+            return children;
+        }
+        Node[] result = new Node[children.length - 1];
+        System.arraycopy(children, 0, result, 0, position);
+        System.arraycopy(children, position + 1, result, position, result.length - position);
+        return result.length == 0 ? NO_CHILDREN : result;
+    }
+
+    private static int commonPrefixLength(Node node, String key, int from) {
+        int max = Math.min(node.labelLength(), key.length() - from);
+        int i = 0;
+        while (i < max && node.labelAt(i) == key.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+}
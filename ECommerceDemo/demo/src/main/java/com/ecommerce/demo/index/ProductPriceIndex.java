@@ -0,0 +1,213 @@
+package com.ecommerce.demo.index;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// In-memory price index: product prices and ids in two parallel primitive arrays,
+// sorted by (price, id). Range queries, keyset pages and histogram buckets are all binary searches,
+// so they cost O(log n) no matter how many products match.
+//
+// Readers work on an immutable snapshot without locking. Writers copy the arrays and swap in a new
+// snapshot (copy-on-write), which suits a catalog that is read far more often than it changes.
+// Bulk loads go through rebuild(), which sorts once instead of inserting one product at a time.
+// Nothing is boxed, not even while sorting: a Long/Double per product would cost more than the arrays.
+public class ProductPriceIndex {
+
+    // One consistent, immutable view of the index
+    public static final class Snapshot {
+        private final double[] prices;
+        private final long[] ids;
+
+        private Snapshot(double[] prices, long[] ids) {
+            this.prices = prices;
+            this.ids = ids;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public double priceAt(int position) {
+            return prices[position];
+        }
+
+        public long idAt(int position) {
+            return ids[position];
+        }
+
+        // Position of the first entry with price >= minPrice
+        public int lowerBound(double minPrice) {
+            return positionAfter(minPrice, Long.MIN_VALUE, false);
+        }
+
+        // Position of the first entry with price > maxPrice
+        public int upperBound(double maxPrice) {
+            return positionAfter(maxPrice, Long.MAX_VALUE, true);
+        }
+
+        // Position of the first entry strictly after (price, id), used to resume a keyset page
+        public int positionAfter(double price, long id) {
+            return positionAfter(price, id, true);
+        }
+
+        // Number of entries with from <= price < to
+        public int count(double from, double to) {
+            return lowerBound(to) - lowerBound(from);
+        }
+
+        private int positionAfter(double price, long id, boolean strictlyAfter) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(prices[mid], ids[mid], price, id);
+                if (cmp < 0 || (strictlyAfter && cmp == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(new double[0], new long[0]);
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    // Collects (id, price) pairs for rebuild() without boxing
+    public static final class Builder {
+        private long[] ids = new long[1024];
+        private double[] prices = new double[1024];
+        private int size;
+
+        public void add(long productId, double price) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                prices = Arrays.copyOf(prices, size * 2);
+            }
+            ids[size] = productId;
+            prices[size] = price;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    // Replace the whole index with the collected products (e.g. at startup): one sort instead of n inserts
+    public void rebuild(Builder builder) {
+        long[] unsortedIds = builder.ids;
+        double[] unsortedPrices = builder.prices;
+        int[] order = sortedOrder(unsortedPrices, unsortedIds, builder.size);
+        double[] prices = new double[order.length];
+        long[] ids = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            prices[i] = unsortedPrices[order[i]];
+            ids[i] = unsortedIds[order[i]];
+        }
+
+        writeLock.lock();
+        try {
+            snapshot = new Snapshot(prices, ids);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Add a product or move it to its new price
+    public void put(long productId, double price) {
+        writeLock.lock();
+        try {
+            Snapshot current = removeLocked(snapshot, productId);
+            int position = current.positionAfter(price, productId, false);
+            double[] prices = new double[current.size() + 1];
+            long[] ids = new long[current.size() + 1];
+            System.arraycopy(current.prices, 0, prices, 0, position);
+            System.arraycopy(current.ids, 0, ids, 0, position);
+            prices[position] = price;
+            ids[position] = productId;
+            System.arraycopy(current.prices, position, prices, position + 1, current.size() - position);
+            System.arraycopy(current.ids, position, ids, position + 1, current.size() - position);
+            snapshot = new Snapshot(prices, ids);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(long productId) {
+        writeLock.lock();
+        try {
+            snapshot = removeLocked(snapshot, productId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The product's position is found by scanning the ids rather than looked up in an id -> price map:
+    // the copy below is linear anyway, and the scan needs no memory of its own
+    private Snapshot removeLocked(Snapshot current, long productId) {
+        int position = indexOf(current.ids, productId);
+        if (position < 0) {
+            return current;
+        }
+        double[] prices = new double[current.size() - 1];
+        long[] ids = new long[current.size() - 1];
+        System.arraycopy(current.prices, 0, prices, 0, position);
+        System.arraycopy(current.ids, 0, ids, 0, position);
+        System.arraycopy(current.prices, position + 1, prices, position, current.size() - position - 1);
+        System.arraycopy(current.ids, position + 1, ids, position, current.size() - position - 1);
+        return new Snapshot(prices, ids);
+    }
+
+    private static int indexOf(long[] ids, long productId) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == productId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Positions 0..size-1 ordered by (price, id): a bottom-up merge sort over int arrays
+    private static int[] sortedOrder(double[] prices, long[] ids, int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] merged = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int from = 0; from < size; from += 2 * width) {
+                int middle = Math.min(from + width, size);
+                int to = Math.min(from + 2 * width, size);
+                int left = from;
+                int right = middle;
+                int out = from;
+                while (left < middle && right < to) {
+                    int a = order[left];
+                    int b = order[right];
+                    merged[out++] = compare(prices[a], ids[a], prices[b], ids[b]) <= 0 ? order[left++] : order[right++];
+                }
+                while (left < middle) {
+                    merged[out++] = order[left++];
+                }
+                while (right < to) {
+                    merged[out++] = order[right++];
+                }
+            }
+            int[] sorted = merged;
+            merged = order;
+            order = sorted;
+        }
+        return order;
+    }
+
+    private static int compare(double priceA, long idA, double priceB, long idB) {
+        int cmp = Double.compare(priceA, priceB);
+        return cmp != 0 ? cmp : Long.compare(idA, idB);
+    }
+}
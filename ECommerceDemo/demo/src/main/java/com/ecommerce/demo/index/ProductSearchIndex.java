@@ -0,0 +1,178 @@
+package com.ecommerce.demo.index;
+
+import com.ecommerce.demo.dto.ProductDto;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory inverted index over product name and description with BM25 ranking.
+//
+// Every product is tokenized into lowercase terms. For each term we keep a posting list
+// (product id -> term frequency), so a query only touches the products that contain its terms
+// instead of scanning the catalog. Terms live in a sorted map, which makes prefix matching
+// ("lap" -> "laptop", "lapdesk") a range lookup.
+//
+// Reads share a read lock and can run in parallel; put/remove take the write lock.
+public class ProductSearchIndex {
+    // BM25 parameters: k1 controls term-frequency saturation, b controls length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // A word in the name counts as much as this many words in the description
+    private static final int NAME_WEIGHT = 3;
+    // Prefix matches score lower than exact matches and only the first few expansions are used,
+    // so a one-letter query cannot touch a large part of the index
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+    private static final int MAX_PREFIX_EXPANSIONS = 32;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, IndexedProduct> products = new HashMap<>();
+    private long totalLength; // Sum of all document lengths, for the average length in BM25
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The indexed copy of a product: what search returns, plus what is needed to un-index it
+    private record IndexedProduct(ProductDto product, Map<String, Integer> termFrequencies, int length) {
+    }
+
+    private record ScoredProduct(ProductDto product, double score) {
+    }
+
+    // Add a product, or replace the indexed version if it is already present
+    public void put(ProductDto product) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String term : tokenize(product.getName())) {
+            termFrequencies.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(product.getDescription())) {
+            termFrequencies.merge(term, 1, Integer::sum);
+        }
+        int length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.getId());
+            products.put(product.getId(), new IndexedProduct(product, termFrequencies, length));
+            termFrequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(product.getId(), frequency));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            products.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns up to limit products ranked by BM25 score, best match first.
+    // Every query term is also matched as a prefix; products matching more terms rank higher.
+    public List<ProductDto> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (products.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / products.size();
+            Map<Long, Double> scores = new HashMap<>();
+            for (String queryTerm : queryTerms) {
+                int expansions = 0;
+                for (Map.Entry<String, Map<Long, Integer>> entry
+                        : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+                    boolean exact = entry.getKey().equals(queryTerm);
+                    if (!exact && ++expansions > MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    addScores(entry.getValue(), exact ? 1.0 : PREFIX_MATCH_FACTOR, averageLength, scores);
+                }
+            }
+            return topK(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addScores(Map<Long, Integer> posting, double factor, double averageLength, Map<Long, Double> scores) {
+        int n = products.size();
+        int documentFrequency = posting.size();
+        double idf = Math.log(1 + (n - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        posting.forEach((productId, frequency) -> {
+            int length = products.get(productId).length();
+            double tf = frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+            scores.merge(productId, factor * idf * tf, Double::sum);
+        });
+    }
+
+    // Keeps only the best limit results in a small min-heap instead of sorting every match
+    private List<ProductDto> topK(Map<Long, Double> scores, int limit) {
+        Comparator<ScoredProduct> byScore = Comparator.comparingDouble(ScoredProduct::score)
+                .thenComparing(scored -> -scored.product().getId()); // Ties: lower id ranks higher
+        PriorityQueue<ScoredProduct> best = new PriorityQueue<>(limit + 1, byScore);
+        scores.forEach((productId, score) -> {
+            best.add(new ScoredProduct(products.get(productId).product(), score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+        List<ScoredProduct> ranked = new ArrayList<>(best);
+        ranked.sort(byScore.reversed());
+        return ranked.stream().map(ScoredProduct::product).toList();
+    }
+
+    private void removeLocked(Long productId) {
+        IndexedProduct existing = products.remove(productId);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.termFrequencies().keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            posting.remove(productId);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= existing.length();
+    }
+
+    // Lowercase words made of letters and digits; everything else separates words
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ecommerce.demo.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Space-Saving heavy hitters (Metwally et al.) over long keys with weighted updates: keeps at most
+// `capacity` counters, however many distinct keys the stream has. A key that is not tracked yet takes
+// over the counter of the smallest one and starts from its count, remembered as the error; so every count
+// is an upper bound that overestimates by at most its error, and any key with a true weight above
+// (total weight / capacity) is guaranteed to be tracked.
+//
+// The counters sit in a min-heap (array + position per counter), so add/subtract/remove are O(log capacity)
+// and top(n) sorts at most `capacity` counters, whatever the size of the stream.
+// scale() multiplies every count, which is how callers apply time decay to the whole summary at once.
+//
+// Not thread-safe: callers lock around it.
+public final class SpaceSavingTopK {
+    private final int capacity;
+    private final Map<Long, Counter> counters;
+    private final Counter[] heap; // Min-heap by count
+    private int size;
+
+    public record Entry(long key, double count, double error) {
+        // What the key is guaranteed to have, at least
+        public double guaranteed() {
+            return count - error;
+        }
+    }
+
+    private static final class Counter {
+        long key;
+        double count;
+        double error;
+        int position;
+
+        Counter(long key) {
+            this.key = key;
+        }
+    }
+
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    public void add(long key, double weight) {
+        if (weight <= 0) {
+            return;
+        }
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.position);
+        } else if (size < capacity) {
+            counter = new Counter(key);
+            counter.count = weight;
+            counter.position = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.position);
+        } else {
+            // Take over the smallest counter: its count becomes the new key's error
+            Counter smallest = heap[0];
+            counters.remove(smallest.key);
+            smallest.key = key;
+            smallest.error = smallest.count;
+            smallest.count += weight;
+            counters.put(key, smallest);
+            siftDown(0);
+        }
+    }
+
+    // Takes weight back from a tracked key (never below 0); untracked keys are left alone
+    public void subtract(long key, double weight) {
+        Counter counter = counters.get(key);
+        if (counter == null || weight <= 0) {
+            return;
+        }
+        counter.count = Math.max(0, counter.count - weight);
+        counter.error = Math.min(counter.error, counter.count);
+        siftUp(counter.position);
+    }
+
+    public void remove(long key) {
+        Counter counter = counters.remove(key);
+        if (counter == null) {
+            return;
+        }
+        int position = counter.position;
+        Counter last = heap[--size];
+        heap[size] = null;
+        if (position < size) {
+            heap[position] = last;
+            last.position = position;
+            siftDown(position);
+            siftUp(last.position);
+        }
+    }
+
+    // Multiplies every count and error by factor (> 0); the order of the counters does not change
+    public void scale(double factor) {
+        for (int i = 0; i < size; i++) {
+            heap[i].count *= factor;
+            heap[i].error *= factor;
+        }
+    }
+
+    // Estimated count of the key (an upper bound), 0 if it is not tracked
+    public double count(long key) {
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.count;
+    }
+
+    // The n largest counters, largest first
+    public List<Entry> top(int n) {
+        Counter[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, Comparator.comparingDouble((Counter counter) -> counter.count).reversed());
+        List<Entry> top = new ArrayList<>(Math.min(n, size));
+        for (int i = 0; i < Math.min(n, size); i++) {
+            top.add(new Entry(sorted[i].key, sorted[i].count, sorted[i].error));
+        }
+        return top;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void siftUp(int position) {
+        Counter counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            move(heap[parent], position);
+            position = parent;
+        }
+        move(counter, position);
+    }
+
+    private void siftDown(int position) {
+        Counter counter = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            move(heap[child], position);
+            position = child;
+        }
+        move(counter, position);
+    }
+
+    private void move(Counter counter, int position) {
+        heap[position] = counter;
+        counter.position = position;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.demo.limit;
+
+import java.lang.annotation.*;
+
+// Puts a controller method (or every method of a controller) under the named adaptive concurrency limit.
+// Each name is a priority class with its own limit and settings (app.concurrency.<name>.*), so a flood
+// in one class (e.g. cart writes during a sale) is shed there instead of slowing down another (catalog reads).
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AdaptiveConcurrencyLimit {
+    // Name of the limiter, e.g. "cart-writes"
+    String value();
+}
@@ -0,0 +1,98 @@
+package com.ecommerce.demo.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Concurrency limit that finds its own level from observed latency, AIMD style (like TCP congestion control):
+// - additive increase: while requests finish within the latency threshold and the limit is actually
+//   being used, it grows by about one per limit's worth of requests
+// - multiplicative decrease: a request slower than the threshold cuts it by backoffRatio, at most once
+//   per threshold interval, so one burst of slow requests counts as one signal instead of collapsing the limit
+// Requests over the limit are rejected right away rather than queued: waiting is what piles requests up
+// behind the connection pool in the first place.
+public class AimdLimiter {
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    // Serializes limit updates. A ReentrantLock rather than synchronized, so a virtual thread releasing
+    // a slot never pins its carrier while it waits for another one's update.
+    private final ReentrantLock sampleLock = new ReentrantLock();
+    private volatile double limit;
+    private long lastDecreaseNanos; // Guarded by sampleLock
+
+    public AimdLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                       long latencyThresholdNanos, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limiter " + name + " needs 1 <= min-limit <= max-limit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Limiter " + name + " needs a backoff-ratio between 0 and 1");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - latencyThresholdNanos;
+    }
+
+    // Takes a slot, or returns -1 if the limit is reached. Pass the returned value to release().
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1; // In flight including this request, for release()
+            }
+        }
+    }
+
+    // Gives the slot back and adjusts the limit from how long the request took
+    public void release(int inFlightAtStart, long latencyNanos) {
+        inFlight.decrementAndGet();
+        onSample(inFlightAtStart, latencyNanos, System.nanoTime());
+    }
+
+    void onSample(int inFlightAtStart, long latencyNanos, long nowNanos) {
+        sampleLock.lock();
+        try {
+            if (latencyNanos > latencyThresholdNanos) {
+                if (nowNanos - lastDecreaseNanos >= latencyThresholdNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = nowNanos;
+                }
+            } else if (inFlightAtStart * 2 >= limit) {
+                // Only grow when at least half the limit was in use, or an idle service would drift up to maxLimit
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
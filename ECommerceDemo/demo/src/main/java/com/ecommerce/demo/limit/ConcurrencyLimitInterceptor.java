@@ -0,0 +1,113 @@
+package com.ecommerce.demo.limit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Applies the @AdaptiveConcurrencyLimit of the handler method: takes a slot before the controller runs
+// and gives it back with the request's latency once the response is complete. Over the limit, the request
+// is answered 503 Service Unavailable with Retry-After straight away, before any database work.
+//
+// Limiters are created on first use from app.concurrency.<name>.* and published as metrics:
+// concurrency.limit, concurrency.inflight and concurrency.rejected, tagged with limiter=<name>.
+@Component
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final String retryAfterSeconds;
+    private final Map<String, AimdLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<Method, Optional<AimdLimiter>> limiterByMethod = new ConcurrentHashMap<>();
+
+    private record Permit(AimdLimiter limiter, int inFlightAtStart, long startNanos) {
+    }
+
+    public ConcurrencyLimitInterceptor(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.retryAfterSeconds = environment.getProperty("app.concurrency.retry-after-seconds", "1");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // An async dispatch (e.g. a streamed body) still holds the slot taken by the original request
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        AimdLimiter limiter = limiterFor(handlerMethod).orElse(null);
+        if (limiter == null) {
+            return true;
+        }
+        int inFlight = limiter.tryAcquire();
+        if (inFlight < 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many concurrent requests, retry later");
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, new Permit(limiter, inFlight, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof Permit permit) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permit.limiter().release(permit.inFlightAtStart(), System.nanoTime() - permit.startNanos());
+        }
+    }
+
+    public AimdLimiter getLimiter(String name) {
+        return limiters.computeIfAbsent(name, this::createLimiter);
+    }
+
+    private Optional<AimdLimiter> limiterFor(HandlerMethod handlerMethod) {
+        return limiterByMethod.computeIfAbsent(handlerMethod.getMethod(), method -> {
+            AdaptiveConcurrencyLimit annotation = AnnotatedElementUtils.findMergedAnnotation(method, AdaptiveConcurrencyLimit.class);
+            if (annotation == null) {
+                annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), AdaptiveConcurrencyLimit.class);
+            }
+            return Optional.ofNullable(annotation).map(limit -> getLimiter(limit.value()));
+        });
+    }
+
+    private AimdLimiter createLimiter(String name) {
+        String prefix = "app.concurrency." + name + ".";
+        AimdLimiter limiter = new AimdLimiter(name,
+                environment.getProperty(prefix + "initial-limit", Integer.class, 20),
+                environment.getProperty(prefix + "min-limit", Integer.class, 1),
+                environment.getProperty(prefix + "max-limit", Integer.class, 200),
+                TimeUnit.MILLISECONDS.toNanos(environment.getProperty(prefix + "latency-threshold-ms", Long.class, 250L)),
+                environment.getProperty(prefix + "backoff-ratio", Double.class, 0.9));
+        Gauge.builder("concurrency.limit", limiter, AimdLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("concurrency.inflight", limiter, AimdLimiter::getInFlight)
+                .description("Requests currently holding a slot")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("concurrency.rejected", limiter, AimdLimiter::getRejected)
+                .description("Requests rejected with 503 because the limit was reached")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        return limiter;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ecommerce.demo.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// SQL statements executed and JDBC time spent while handling the current HTTP request.
+// SqlMetricsFilter starts and ends the tracking around each request; SqlMetricsListener adds to it
+// after every statement. Statements run outside a request (startup, scheduled jobs, the async
+// part of streaming responses) are not tracked.
+public final class RequestSqlStats {
+    private static final ThreadLocal<RequestSqlStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long jdbcNanos;
+    // SQL text of every execution, only kept when asked for (query budget tests print it on failure)
+    private final List<String> sql;
+
+    private RequestSqlStats(boolean captureSql) {
+        this.sql = captureSql ? new ArrayList<>() : null;
+    }
+
+    static RequestSqlStats start() {
+        return start(false);
+    }
+
+    static RequestSqlStats start(boolean captureSql) {
+        RequestSqlStats stats = new RequestSqlStats(captureSql);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    // Stats of the request handled by the calling thread, or null outside a request
+    public static RequestSqlStats current() {
+        return CURRENT.get();
+    }
+
+    boolean isCapturingSql() {
+        return sql != null;
+    }
+
+    void record(long elapsedNanos, String statementSql) {
+        statements++;
+        jdbcNanos += elapsedNanos;
+        if (sql != null) {
+            sql.add(statementSql);
+        }
+    }
+
+    // JDBC executions: a batch counts once, however many rows it carries
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    // Executed SQL in order, or an empty list when it was not captured
+    public List<String> getSql() {
+        return sql == null ? List.of() : List.copyOf(sql);
+    }
+}
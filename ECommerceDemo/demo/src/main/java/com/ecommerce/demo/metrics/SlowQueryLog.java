@@ -0,0 +1,93 @@
+package com.ecommerce.demo.metrics;
+
+import com.ecommerce.demo.dto.SlowQueryDto;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+// The last app.sql.slow-query.capacity statements that took at least app.sql.slow-query.threshold-ms,
+// plus a random app.sql.slow-query.sample-rate fraction of the faster ones, for GET /api/admin/slow-queries.
+// Replaces show-sql: fed by SqlMetricsListener, which times every statement anyway. A fast statement
+// costs one comparison (and one random number if sampling is on); only kept statements pay for
+// copying the SQL and walking the stack to find the calling method.
+// Lock-free ring buffer: writers claim a slot with one atomic increment and overwrite the oldest entry.
+@Component
+public class SlowQueryLog {
+    private static final int MAX_SQL_LENGTH = 2000;
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong written = new AtomicLong();
+
+    private record Entry(long sequence, SlowQueryDto query) {
+    }
+
+    public SlowQueryLog(@Value("${app.sql.slow-query.threshold-ms:100}") long thresholdMillis,
+                        @Value("${app.sql.slow-query.sample-rate:0}") double sampleRate,
+                        @Value("${app.sql.slow-query.capacity:256}") int capacity) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.sampleRate = sampleRate;
+        this.entries = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    // Called after every statement on the thread that ran it
+    void offer(long elapsedNanos, ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        boolean slow = elapsedNanos >= thresholdNanos;
+        if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        int bindCount = queryInfoList.stream()
+                .flatMap(query -> query.getParametersList().stream())
+                .mapToInt(List::size)
+                .sum();
+        SlowQueryDto query = new SlowQueryDto(Instant.now(), elapsedNanos / 1_000_000.0, describe(queryInfoList),
+                bindCount, execInfo.isBatch() ? execInfo.getBatchSize() : 1, findCaller(), !slow);
+        long sequence = written.getAndIncrement();
+        entries.set((int) (sequence % entries.length()), new Entry(sequence, query));
+    }
+
+    // Kept statements, newest first
+    public List<SlowQueryDto> getEntries() {
+        List<Entry> snapshot = new ArrayList<>(entries.length());
+        for (int i = 0; i < entries.length(); i++) {
+            Entry entry = entries.get(i);
+            if (entry != null) {
+                snapshot.add(entry);
+            }
+        }
+        return snapshot.stream()
+                .sorted(Comparator.comparingLong(Entry::sequence).reversed())
+                .map(Entry::query)
+                .collect(Collectors.toList());
+    }
+
+    private static String describe(List<QueryInfo> queryInfoList) {
+        String sql = queryInfoList.stream().map(QueryInfo::getQuery).distinct().collect(Collectors.joining("; "));
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    // First frame of our own code below the JDBC layers: usually the service method that issued the query.
+    // Frames of this package, the DataSource wrappers in config and Spring's generated proxies are skipped.
+    private static String findCaller() {
+        Optional<StackWalker.StackFrame> frame = StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("com.ecommerce.demo.")
+                        && !f.getClassName().startsWith("com.ecommerce.demo.metrics.")
+                        && !f.getClassName().startsWith("com.ecommerce.demo.config.")
+                        && !f.getClassName().contains("$$"))
+                .findFirst());
+        return frame.map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1)
+                + "." + f.getMethodName() + ":" + f.getLineNumber()).orElse("unknown");
+    }
+}
@@ -0,0 +1,32 @@
+package com.ecommerce.demo.metrics;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import com.ecommerce.demo.config.DataSourceWrapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+// Wraps the application DataSource in a datasource-proxy ProxyDataSource so every statement
+// passes through SqlMetricsListener (per-request SQL counts and the slow-query log)
+@Configuration
+public class SqlMetricsConfig {
+
+    // Static so the post-processor is registered before the DataSource is created
+    @Bean
+    public static DataSourceWrapper sqlMetricsDataSourcePostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new DataSourceWrapper(DataSourceWrapper.SQL_METRICS) {
+            @Override
+            protected DataSource wrap(DataSource dataSource, String beanName) {
+                if (dataSource instanceof ProxyDataSource) {
+                    return dataSource;
+                }
+                return ProxyDataSourceBuilder.create(beanName, dataSource)
+                        .listener(new SqlMetricsListener(slowQueryLog))
+                        .build();
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.ecommerce.demo.metrics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Times every JDBC execution (execute, executeQuery, executeUpdate, executeBatch), adds it to
+// the current request's RequestSqlStats and offers it to the SlowQueryLog
+class SqlMetricsListener implements QueryExecutionListener {
+    private static final String START_NANOS = "sqlMetrics.startNanos";
+
+    // Looked up on the first statement and kept: the DataSource is wrapped before the application beans exist
+    private final ObjectProvider<SlowQueryLog> slowQueryLogProvider;
+    private volatile SlowQueryLog slowQueryLog;
+
+    SqlMetricsListener(ObjectProvider<SlowQueryLog> slowQueryLogProvider) {
+        this.slowQueryLogProvider = slowQueryLogProvider;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // datasource-proxy only measures whole milliseconds, which rounds most statements to 0
+        execInfo.addCustomValue(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long startNanos = execInfo.getCustomValue(START_NANOS, Long.class);
+        if (startNanos == null) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            stats.record(elapsedNanos, stats.isCapturingSql() ? describe(execInfo, queryInfoList) : null);
+        }
+        SlowQueryLog log = slowQueryLog;
+        if (log == null) {
+            log = slowQueryLog = slowQueryLogProvider.getObject();
+        }
+        log.offer(elapsedNanos, execInfo, queryInfoList);
+    }
+
+    private static String describe(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        String sql = queryInfoList.stream().map(QueryInfo::getQuery).distinct().collect(Collectors.joining("; "));
+        return execInfo.isBatch() ? "[batch of " + execInfo.getBatchSize() + "] " + sql : sql;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ecommerce.demo.metrics;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+// Adds the SQL headers just before a response body is written, while headers can still be set.
+// SqlMetricsFilter overwrites them with the final numbers if the response is not committed yet.
+@ControllerAdvice
+public class SqlMetricsResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestSqlStats stats = RequestSqlStats.current();
+        if (stats != null) {
+            response.getHeaders().set(SqlMetricsFilter.COUNT_HEADER, Integer.toString(stats.getStatements()));
+            response.getHeaders().set(SqlMetricsFilter.TIME_HEADER, SqlMetricsFilter.formatMillis(stats));
+        }
+        return body;
+    }
+}
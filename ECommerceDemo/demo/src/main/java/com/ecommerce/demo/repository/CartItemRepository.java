@@ -1,25 +1,84 @@
 package com.ecommerce.demo.repository;
 
+import com.ecommerce.demo.dto.CartSummaryDto;
+import com.ecommerce.demo.dto.ResourceVersion;
 import com.ecommerce.demo.entity.CartItem;
 import com.ecommerce.demo.entity.Customer;
 import com.ecommerce.demo.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
-import org.springframework.transaction.annotation.Transactional;
 import java.util.*;
 import org.springframework.stereotype.Service;
 
 
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    String UPSERT_QUANTITY_SQL = "INSERT INTO cart_items (id, customer_id, product_id, quantity) "
+            + "VALUES (NEXT VALUE FOR cart_items_seq, :customerId, :productId, :quantity) "
+            + "ON DUPLICATE KEY UPDATE quantity = quantity + :quantity, version = version + 1, "
+            + "updated_at = CURRENT_TIMESTAMP";
+
     List<CartItem> findByCustomer(Customer customer);
     List<CartItem> findByProduct(Product product);
     Optional<CartItem> findByCustomerAndProduct(Customer customer, Product product); // Use Optional for single result
 
+    // All of a customer's cart lines for the given products, in one query (used by batch updates)
+    @Query("SELECT ci FROM CartItem ci WHERE ci.customer = :customer AND ci.product.id IN :productIds")
+    List<CartItem> findByCustomerAndProductIds(@Param("customer") Customer customer,
+                                               @Param("productIds") Collection<Long> productIds);
+
+    // Empties a customer's cart with one statement. (A derived deleteByCustomer would load every line
+    // into the persistence context first and then delete them one by one.) Returns the lines deleted.
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.customer.id = :customerId")
+    int deleteAllByCustomerId(@Param("customerId") Long customerId);
+
+    // Up to limit cart lines of a product, or of a customer, deleted in one statement. ProductService and
+    // CustomerService call these in a loop, each chunk in a transaction of its own, so removing a product
+    // that sits in many carts neither becomes one huge statement nor holds all its row locks until the end.
+    // The last chunk (fewer than limit) shares its transaction with the delete of the product or customer.
+    // Like upsertQuantity, the query-spaces hint keeps the product and customer caches intact.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_items"))
+    @Query(value = "DELETE FROM cart_items WHERE product_id = :productId LIMIT :limit", nativeQuery = true)
+    int deleteChunkByProductId(@Param("productId") Long productId, @Param("limit") int limit);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_items"))
+    @Query(value = "DELETE FROM cart_items WHERE customer_id = :customerId LIMIT :limit", nativeQuery = true)
+    int deleteChunkByCustomerId(@Param("customerId") Long customerId, @Param("limit") int limit);
+
+    // Atomically add quantity to the customer's line for the product, creating the line if needed.
+    // One statement and one round trip: the unique (customer_id, product_id) key turns a concurrent
+    // second INSERT into an increment, so double-clicks can neither duplicate lines nor lose updates.
+    // The new line takes its id from the same sequence Hibernate uses (see CartItem); an existing line
+    // gets a new version and updated_at, as if Hibernate had updated it.
+    // The query-spaces hint tells Hibernate only cart_items changed, so the second-level cache of
+    // products and customers is not invalidated by this native statement.
+    // CartItemService sends the same statement as a JDBC batch for batch adds (UPSERT_QUANTITY_SQL).
     @Modifying
-    @Transactional
-    void deleteByCustomer(Customer customer);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "cart_items"))
+    @Query(value = UPSERT_QUANTITY_SQL, nativeQuery = true)
+    int upsertQuantity(@Param("customerId") Long customerId, @Param("productId") Long productId,
+                       @Param("quantity") int quantity);
+
+    // Line count, total quantity and subtotal of a customer's cart as one aggregate row.
+    // Only scalars are selected, so no CartItem or Product entities are loaded; an empty cart yields zeros.
+    @Query("SELECT new com.ecommerce.demo.dto.CartSummaryDto(:customerId, COUNT(ci), COALESCE(SUM(ci.quantity), 0L), "
+            + "COALESCE(SUM(ci.quantity * p.price), 0.0)) "
+            + "FROM CartItem ci JOIN ci.product p WHERE ci.customer.id = :customerId")
+    CartSummaryDto summarizeByCustomerId(@Param("customerId") Long customerId);
+
+    // Version of a customer's cart for conditional GETs, without loading any lines. The cart JSON shows
+    // product names and prices, so product versions count too: renaming a product changes the ETag.
+    @Query("SELECT new com.ecommerce.demo.dto.ResourceVersion(COUNT(ci), SUM(ci.version + p.version), "
+            + "MAX(CASE WHEN ci.updatedAt > p.updatedAt THEN ci.updatedAt ELSE p.updatedAt END)) "
+            + "FROM CartItem ci JOIN ci.product p WHERE ci.customer.id = :customerId")
+    ResourceVersion findCartVersion(@Param("customerId") Long customerId);
 
     // Custom query to find all cart items for a customer, including product details
     // Using JOIN FETCH to eager load product and customer to avoid N+1 problem when displaying cart
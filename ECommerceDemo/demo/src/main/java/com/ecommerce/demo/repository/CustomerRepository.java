@@ -1,15 +1,49 @@
 package com.ecommerce.demo.repository;
 
+import com.ecommerce.demo.dto.CustomerSuggestionDto;
 import com.ecommerce.demo.entity.Customer;
 import com.ecommerce.demo.entity.CartItem;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
+    // Result is kept in the query cache; any write to customers invalidates it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Customer> findByEmail(String email);
+
+    // Duplicate-email checks, both answered from the uk_customers_email index.
+    // Not cached: the answer has to be current, and the Bloom filter in front already absorbs most calls.
+    boolean existsByEmail(String email);
+    boolean existsByEmailAndIdNot(String email, Long id);
+
+    // Streams only the email column, for loading CustomerEmailFilter at startup.
+    // Must be consumed inside a transaction and closed afterwards (try-with-resources).
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT c.email FROM Customer c WHERE c.email IS NOT NULL")
+    Stream<String> streamAllEmails();
+
+    // Streams id and name only, for loading the name typeahead (CustomerSuggestService) at startup
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.ecommerce.demo.dto.CustomerSuggestionDto(c.id, c.name) FROM Customer c")
+    Stream<CustomerSuggestionDto> streamAllNames();
+
     List<Customer> findByNameStartingWith(String prefix);
     List<Customer> findByNameContainingIgnoreCase(String keyword);
-}
\ No newline at end of file
+
+    // Keyset (seek) pagination, see ProductRepository
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Query("SELECT c FROM Customer c ORDER BY c.name ASC, c.id ASC")
+    List<Customer> findFirstPageOrderByName(Limit limit);
+
+    @Query("SELECT c FROM Customer c WHERE c.name > :name OR (c.name = :name AND c.id > :id) ORDER BY c.name ASC, c.id ASC")
+    List<Customer> findPageOrderByNameAfter(@Param("name") String name, @Param("id") Long id, Limit limit);
+}
@@ -1,12 +1,56 @@
 package com.ecommerce.demo.repository;
+import com.ecommerce.demo.dto.ResourceVersion;
 import com.ecommerce.demo.entity.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
 import java.util.*;
+import java.util.stream.Stream;
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    // Result is kept in the query cache; any write to products invalidates it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Product> findByName(String name);
     List<Product> findByNameContainingIgnoreCase(String keyword);
     List<Product> findByPriceGreaterThan(double price);
     List<Product> findByPriceBetween(double minPrice, double maxPrice);
-}
\ No newline at end of file
+
+    // Keyset (seek) pagination: every page starts right after the last row of the previous page,
+    // so with the (price, id) and (name, id) indexes on Product a deep page costs the same as page one
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Query("SELECT p FROM Product p ORDER BY p.price ASC, p.id ASC")
+    List<Product> findFirstPageOrderByPrice(Limit limit);
+
+    @Query("SELECT p FROM Product p WHERE p.price > :price OR (p.price = :price AND p.id > :id) ORDER BY p.price ASC, p.id ASC")
+    List<Product> findPageOrderByPriceAfter(@Param("price") double price, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT p FROM Product p ORDER BY p.name ASC, p.id ASC")
+    List<Product> findFirstPageOrderByName(Limit limit);
+
+    @Query("SELECT p FROM Product p WHERE p.name > :name OR (p.name = :name AND p.id > :id) ORDER BY p.name ASC, p.id ASC")
+    List<Product> findPageOrderByNameAfter(@Param("name") String name, @Param("id") Long id, Limit limit);
+
+    // Version of the whole catalog for conditional GETs of /products, without relying on any clock:
+    // updated_at is written by the JVM for Hibernate updates but by the database for the import's upserts,
+    // so MAX(updated_at) can stay put while products change. Instead, every update bumps a row version
+    // (SUM), every delete lowers the row count, and every insert raises the largest id, ids never being
+    // reused. MAX(updated_at) is only the Last-Modified date. The SUM reads every row, so this is one
+    // scan of products, still far cheaper than loading and serializing a page.
+    @Query("SELECT new com.ecommerce.demo.dto.ResourceVersion(COUNT(p), MAX(p.id), SUM(p.version), MAX(p.updatedAt)) "
+            + "FROM Product p")
+    ResourceVersion findCatalogVersion();
+
+    // Streams the whole catalog in id order for exports. Rows are pulled from the JDBC cursor
+    // in chunks of the fetch size instead of being materialized into one list.
+    // Must be consumed inside a transaction and closed afterwards (try-with-resources).
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true") // No dirty-checking snapshots
+    })
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    Stream<Product> streamAllOrderedById();
+}
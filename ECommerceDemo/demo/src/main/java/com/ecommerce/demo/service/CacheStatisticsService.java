@@ -0,0 +1,45 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CacheRegionStatsDto;
+import org.springframework.stereotype.Service;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+
+// Reads hit/miss/put/eviction counters of the second-level cache regions.
+// Caffeine registers a standard JCache statistics MBean per region (monitoring.statistics in
+// application.conf), so this works for every region without holding on to the cache instances.
+@Service
+public class CacheStatisticsService {
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    public List<CacheRegionStatsDto> getRegionStatistics() {
+        try {
+            return mBeanServer.queryNames(new ObjectName("javax.cache:type=CacheStatistics,*"), null).stream()
+                    .map(this::toDto)
+                    .sorted(Comparator.comparing(CacheRegionStatsDto::getRegion))
+                    .toList();
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not read cache statistics", e);
+        }
+    }
+
+    private CacheRegionStatsDto toDto(ObjectName name) {
+        try {
+            CacheRegionStatsDto dto = new CacheRegionStatsDto();
+            dto.setRegion(name.getKeyProperty("Cache"));
+            dto.setHits((Long) mBeanServer.getAttribute(name, "CacheHits"));
+            dto.setMisses((Long) mBeanServer.getAttribute(name, "CacheMisses"));
+            dto.setPuts((Long) mBeanServer.getAttribute(name, "CachePuts"));
+            dto.setEvictions((Long) mBeanServer.getAttribute(name, "CacheEvictions"));
+            dto.setHitPercentage((Float) mBeanServer.getAttribute(name, "CacheHitPercentage"));
+            return dto;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not read cache statistics for " + name, e);
+        }
+    }
+}
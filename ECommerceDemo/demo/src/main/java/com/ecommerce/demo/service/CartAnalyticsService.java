@@ -0,0 +1,90 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.dto.ProductScoreDto;
+import com.ecommerce.demo.event.CartActivityEvent;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import com.ecommerce.demo.index.CartActivityIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// "Trending in carts" and "often added together", answered from the in-memory CartActivityIndex.
+// It is fed by the CartActivityEvents of the cart services once their changes have committed, so
+// answering never touches cart_items; only the few products in the answer are loaded for names and prices.
+// Counts decay with app.cart.analytics.half-life, and start from zero when the application starts.
+@Service
+public class CartAnalyticsService {
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+
+    private final ProductService productService;
+    private final CartActivityIndex index;
+
+    public CartAnalyticsService(ProductService productService,
+                                @Value("${app.cart.analytics.top-k:200}") int topK,
+                                @Value("${app.cart.analytics.neighbors:20}") int neighbors,
+                                @Value("${app.cart.analytics.tracked-products:10000}") int trackedProducts,
+                                @Value("${app.cart.analytics.recent-cart-size:10}") int recentCartSize,
+                                @Value("${app.cart.analytics.tracked-customers:100000}") int trackedCustomers,
+                                @Value("${app.cart.analytics.session-window:2h}") Duration sessionWindow,
+                                @Value("${app.cart.analytics.half-life:6h}") Duration halfLife) {
+        this.productService = productService;
+        this.index = new CartActivityIndex(topK, neighbors, trackedProducts, recentCartSize, trackedCustomers,
+                sessionWindow.toNanos(), halfLife.toNanos(), System.nanoTime());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCartActivity(CartActivityEvent event) {
+        long now = System.nanoTime();
+        switch (event.type()) {
+            case ADDED -> index.added(event.customerId(), event.productId(), event.quantity(), now);
+            case REMOVED -> index.removed(event.customerId(), event.productId(), event.quantity(), event.lineRemoved(), now);
+            case CLEARED -> index.cleared(event.customerId());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.type() == ProductChangedEvent.Type.DELETED) {
+            index.removeProduct(event.productId());
+        }
+    }
+
+    public List<ProductScoreDto> getTrendingProducts(Integer limit) {
+        return withProducts(index.trending(limit(limit), System.nanoTime()));
+    }
+
+    public List<ProductScoreDto> getAlsoCarted(Long productId, Integer limit) {
+        return withProducts(index.alsoCarted(productId, limit(limit), System.nanoTime()));
+    }
+
+    private static int limit(Integer limit) {
+        return limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+    }
+
+    // One query for the products of the answer; deleted ones are skipped
+    private List<ProductScoreDto> withProducts(List<CartActivityIndex.Scored> scored) {
+        if (scored.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductDto> products = productService.getProductsByIds(
+                        scored.stream().map(CartActivityIndex.Scored::productId).toList()).stream()
+                .collect(Collectors.toMap(ProductDto::getId, Function.identity()));
+        List<ProductScoreDto> result = new ArrayList<>(scored.size());
+        for (CartActivityIndex.Scored entry : scored) {
+            ProductDto product = products.get(entry.productId());
+            if (product != null) {
+                result.add(new ProductScoreDto(product, entry.score()));
+            }
+        }
+        return result;
+    }
+}
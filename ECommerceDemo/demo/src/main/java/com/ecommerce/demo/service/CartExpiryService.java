@@ -0,0 +1,195 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CartExpiryStatsDto;
+import com.ecommerce.demo.event.CartsExpiredEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Deletes abandoned carts: all lines of every cart whose newest change (MAX(cart_items.updated_at))
+// is older than app.cart.expiry.idle-ttl, so cart_items and its indexes only hold carts that are in use.
+//
+// A run walks the carts in customer id order (keyset pagination over the unique (customer_id, product_id)
+// index, never OFFSET), each batch in a short transaction of its own. A batch looks at no more than
+// app.cart.expiry.scan-range customer ids and deletes at most app.cart.expiry.batch-size carts, so a long
+// stretch of active carts is scanned a slice at a time too, not in one go while looking for idle ones.
+// Between batches it pauses as needed to stay under app.cart.expiry.max-rows-per-second (0 for no limit),
+// so a large backlog is worked off slowly instead of competing with live cart traffic for locks and I/O.
+//
+// Every run is logged with the carts and rows it deleted; totals are at GET /api/admin/cart-expiry.
+@Service
+@ConditionalOnProperty(name = "app.cart.expiry.enabled", havingValue = "true", matchIfMissing = true)
+public class CartExpiryService {
+    private static final Logger log = LoggerFactory.getLogger(CartExpiryService.class);
+
+    // Where the walk ends; carts of customers added during the run are not idle anyway
+    private static final String MAX_CUSTOMER_ID_SQL = "SELECT MAX(customer_id) FROM cart_items";
+    // The next batch of idle carts after the last customer id of the previous batch, within the scan range
+    private static final String FIND_IDLE_CARTS_SQL = "SELECT customer_id FROM cart_items "
+            + "WHERE customer_id > :after AND customer_id <= :until "
+            + "GROUP BY customer_id HAVING MAX(updated_at) < :idleSince ORDER BY customer_id LIMIT :limit";
+    // Deletes the carts that are still idle: a cart changed since it was picked keeps every line.
+    // The inner select sits in a derived table because MySQL rejects a subquery on the table being deleted from.
+    private static final String DELETE_IDLE_CARTS_SQL = "DELETE FROM cart_items WHERE customer_id IN (:customerIds) "
+            + "AND customer_id NOT IN (SELECT customer_id FROM (SELECT customer_id FROM cart_items "
+            + "WHERE customer_id IN (:customerIds) AND updated_at >= :idleSince) active)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration idleTtl;
+    private final int batchSize;
+    private final long scanRange;
+    private final int maxRowsPerSecond;
+
+    // One run at a time, whether scheduled or started by hand
+    private final ReentrantLock running = new ReentrantLock();
+    private volatile CartExpiryStatsDto stats;
+
+    public CartExpiryService(NamedParameterJdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${app.cart.expiry.idle-ttl:30d}") Duration idleTtl,
+                             @Value("${app.cart.expiry.batch-size:500}") int batchSize,
+                             @Value("${app.cart.expiry.scan-range:10000}") long scanRange,
+                             @Value("${app.cart.expiry.max-rows-per-second:2000}") int maxRowsPerSecond) {
+        if (batchSize < 1 || scanRange < 1) {
+            throw new IllegalArgumentException("app.cart.expiry.batch-size and scan-range must be at least 1");
+        }
+        if (maxRowsPerSecond < 0) {
+            throw new IllegalArgumentException("app.cart.expiry.max-rows-per-second must be 0 (no limit) or more");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.idleTtl = idleTtl;
+        this.batchSize = batchSize;
+        this.scanRange = scanRange;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.stats = new CartExpiryStatsDto();
+        this.stats.setIdleTtl(idleTtl.toString());
+    }
+
+    // Returns the number of rows deleted, or -1 when another run was still in progress
+    @Scheduled(fixedDelayString = "${app.cart.expiry.interval-ms:600000}",
+            initialDelayString = "${app.cart.expiry.initial-delay-ms:60000}")
+    public long sweep() {
+        if (!running.tryLock()) {
+            return -1;
+        }
+        try {
+            return run();
+        } finally {
+            running.unlock();
+        }
+    }
+
+    public CartExpiryStatsDto getStats() {
+        return stats;
+    }
+
+    private long run() {
+        Instant startedAt = Instant.now();
+        Timestamp idleSince = Timestamp.from(startedAt.minus(idleTtl));
+        long start = System.nanoTime();
+        long carts = 0;
+        long rows = 0;
+        int batches = 0;
+        long throttledNanos = 0;
+        Long maxCustomerId = jdbcTemplate.queryForObject(MAX_CUSTOMER_ID_SQL, new MapSqlParameterSource(), Long.class);
+        long after = 0;
+        try {
+            while (maxCustomerId != null && after < maxCustomerId) {
+                long batchStart = System.nanoTime();
+                long from = after;
+                long until = Math.min(after + scanRange, maxCustomerId);
+                BatchResult batch = transactionTemplate.execute(status -> deleteBatch(from, until, idleSince));
+                if (batch.customerIds().size() < batchSize) {
+                    after = until; // Nothing more in this range
+                } else {
+                    after = batch.customerIds().get(batch.customerIds().size() - 1);
+                }
+                if (batch.customerIds().isEmpty()) {
+                    continue; // Scanned a range of active carts; nothing deleted, so nothing to pace
+                }
+                batches++;
+                carts += batch.customerIds().size();
+                rows += batch.rows();
+                eventPublisher.publishEvent(new CartsExpiredEvent(batch.customerIds(), idleSince.toInstant()));
+                throttledNanos += pace(batch.rows(), System.nanoTime() - batchStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Shutting down; the next run picks up where this one stopped
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        record(startedAt, millis, carts, rows, batches, throttledNanos / 1_000_000);
+        if (rows > 0) {
+            log.info("Cart expiry deleted {} rows of {} carts idle since {} in {} batches ({} ms, {} ms throttled)",
+                    rows, carts, idleSince.toInstant(), batches, millis, throttledNanos / 1_000_000);
+        } else {
+            log.debug("Cart expiry found no carts idle since {} ({} ms)", idleSince.toInstant(), millis);
+        }
+        return rows;
+    }
+
+    private record BatchResult(List<Long> customerIds, int rows) {
+    }
+
+    private BatchResult deleteBatch(long after, long until, Timestamp idleSince) {
+        List<Long> customerIds = jdbcTemplate.queryForList(FIND_IDLE_CARTS_SQL, new MapSqlParameterSource()
+                .addValue("after", after)
+                .addValue("until", until)
+                .addValue("idleSince", idleSince)
+                .addValue("limit", batchSize), Long.class);
+        if (customerIds.isEmpty()) {
+            return new BatchResult(customerIds, 0);
+        }
+        int rows = jdbcTemplate.update(DELETE_IDLE_CARTS_SQL, new MapSqlParameterSource()
+                .addValue("customerIds", customerIds)
+                .addValue("idleSince", idleSince));
+        return new BatchResult(customerIds, rows);
+    }
+
+    // Sleeps long enough that rows deleted in elapsedNanos stay within maxRowsPerSecond; returns the time slept
+    private long pace(int rows, long elapsedNanos) throws InterruptedException {
+        if (maxRowsPerSecond == 0) {
+            return 0;
+        }
+        long pauseNanos = rows * 1_000_000_000L / maxRowsPerSecond - elapsedNanos;
+        if (pauseNanos <= 0) {
+            return 0;
+        }
+        Thread.sleep(Duration.ofNanos(pauseNanos));
+        return pauseNanos;
+    }
+
+    private void record(Instant startedAt, long millis, long carts, long rows, int batches, long throttledMillis) {
+        CartExpiryStatsDto previous = stats;
+        CartExpiryStatsDto next = new CartExpiryStatsDto();
+        next.setIdleTtl(previous.getIdleTtl());
+        next.setRuns(previous.getRuns() + 1);
+        next.setTotalCartsExpired(previous.getTotalCartsExpired() + carts);
+        next.setTotalRowsDeleted(previous.getTotalRowsDeleted() + rows);
+        next.setLastRunStartedAt(startedAt);
+        next.setLastRunMillis(millis);
+        next.setLastRunCarts(carts);
+        next.setLastRunRows(rows);
+        next.setLastRunBatches(batches);
+        next.setLastRunThrottledMillis(throttledMillis);
+        stats = next; // Runs never overlap, so replacing the snapshot is enough
+    }
+}
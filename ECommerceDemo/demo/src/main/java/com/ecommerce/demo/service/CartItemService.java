@@ -1,37 +1,64 @@
 package com.ecommerce.demo.service;
 
+import com.ecommerce.demo.config.ReadYourWrites;
 import com.ecommerce.demo.dto.CartItemDto; // For output to client
 import com.ecommerce.demo.dto.CartItemDto; // For input from client
+import com.ecommerce.demo.dto.CartSummaryDto;
+import com.ecommerce.demo.dto.ResourceVersion;
 import com.ecommerce.demo.entity.CartItem;
 import com.ecommerce.demo.entity.Product;
 import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.event.CartActivityEvent;
+import com.ecommerce.demo.exception.BadRequestException;
 import com.ecommerce.demo.exception.ResourceNotFoundException;
 import com.ecommerce.demo.repository.CartItemRepository;
 import com.ecommerce.demo.repository.ProductRepository;
 import com.ecommerce.demo.repository.CustomerRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+// Database-backed CartService: every call reads or writes cart_items directly.
+// With read replicas on, a customer's cart reads go to the primary for a short while after they changed it (see ReadYourWrites).
 @Service
-public class CartItemService { // Renamed from CartService to CartItemService for clarity
+public class CartItemService implements CartService { // Renamed from CartService to CartItemService for clarity
+    private static final String CART = "cart";
+
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
     private final CustomerRepository customerRepository;
+    private final ReadYourWrites readYourWrites;
+    // Tells the cart analytics (trending, also-carted) what changed
+    private final ApplicationEventPublisher eventPublisher;
+    private final NamedParameterJdbcTemplate jdbcTemplate; // For the batched upserts of addOrUpdateCartItems
 
     public CartItemService(CartItemRepository cartItemRepository,
                            ProductRepository productRepository,
-                           CustomerRepository customerRepository) {
+                           CustomerRepository customerRepository,
+                           ReadYourWrites readYourWrites,
+                           ApplicationEventPublisher eventPublisher,
+                           NamedParameterJdbcTemplate jdbcTemplate) {
         this.cartItemRepository = cartItemRepository;
         this.productRepository = productRepository;
         this.customerRepository = customerRepository;
+        this.readYourWrites = readYourWrites;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     // Helper method: Convert CartItem entity to CartItemDto for sending data to the client
-    private CartItemDto convertToDto(CartItem cartItem) {
+    CartItemDto convertToDto(CartItem cartItem) { // Package-private for DtoMappingBenchmark
         CartItemDto dto = new CartItemDto();
         dto.setId(cartItem.getId()); // Include CartItem ID
         dto.setProductId(cartItem.getProduct().getId());
@@ -43,13 +70,24 @@ public class CartItemService { // Renamed from CartService to CartItemService fo
         return dto;
     }
 
+    // Helper method: Publish a change of a line's quantity as added or removed cart activity
+    private void publishQuantityChange(Long customerId, Long productId, int before, int after) {
+        if (after > before) {
+            eventPublisher.publishEvent(CartActivityEvent.added(customerId, productId, after - before));
+        } else if (after < before) {
+            eventPublisher.publishEvent(CartActivityEvent.removed(customerId, productId, before - after, after == 0));
+        }
+    }
+
     // Helper method: Convert CartItemRequest DTO to CartItem entity for saving/updating in the database
     // This is typically handled within the specific service method, as it involves fetching related entities.
     // So, no general convertToEntity for CartItemDto is needed here, as CartItemRequest is for input.
 
     // Get all cart items for a specific customer as DTOs
+    @Override
     @Transactional(readOnly = true)
     public List<CartItemDto> getCartItemsByCustomer(Long customerId) {
+        readYourWrites.beforeRead(CART, customerId);
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + customerId));
 
@@ -61,43 +99,116 @@ public class CartItemService { // Renamed from CartService to CartItemService fo
                 .collect(Collectors.toList());
     }
 
+    // Cart totals for page headers, computed by the database in one aggregate query.
+    // The customer lookup is a second-level cache hit when hot, so this is usually a single query.
+    @Override
+    @Transactional(readOnly = true)
+    public CartSummaryDto getCartSummary(Long customerId) {
+        readYourWrites.beforeRead(CART, customerId);
+        if (customerRepository.findById(customerId).isEmpty()) {
+            throw new ResourceNotFoundException("Customer not found with id: " + customerId);
+        }
+        return cartItemRepository.summarizeByCustomerId(customerId);
+    }
+
+    // Cart version from one aggregate query over the lines and their products (no entities loaded);
+    // the customer lookup is a second-level cache hit when hot, like in getCartSummary
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getCartVersion(Long customerId) {
+        readYourWrites.beforeRead(CART, customerId);
+        if (customerRepository.findById(customerId).isEmpty()) {
+            throw new ResourceNotFoundException("Customer not found with id: " + customerId);
+        }
+        return cartItemRepository.findCartVersion(customerId);
+    }
+
     // Add a product to the customer's cart, or update quantity if already present
+    @Override
     @Transactional
     public CartItemDto addOrUpdateCartItem(CartItemDto request) { // Accepts CartItemRequest DTO
-        // 1. Fetch the Customer and Product entities using their IDs
+        // 1. Fetch the Customer and Product entities using their IDs (second-level cache hits when hot)
         Customer customer = customerRepository.findById(request.getCustomerId())
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + request.getCustomerId()));
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + request.getProductId()));
 
-        // 2. Check if this product is already in this customer's cart
-        Optional<CartItem> existingCartItem = cartItemRepository.findByCustomerAndProduct(customer, product);
+        // 2. Insert the line or add to its quantity in a single atomic statement
+        //    (no read-modify-write, so concurrent requests for the same line cannot lose increments)
+        cartItemRepository.upsertQuantity(customer.getId(), product.getId(), request.getQuantity());
+        readYourWrites.recordWrite(CART, customer.getId());
+        publishQuantityChange(customer.getId(), product.getId(), 0, request.getQuantity());
 
-        CartItem cartItem;
-        if (existingCartItem.isPresent()) {
-            // If item exists, update its quantity
-            cartItem = existingCartItem.get();
-            cartItem.setQuantity(cartItem.getQuantity() + request.getQuantity());
-        } else {
-            // If item does not exist, create a new CartItem
-            cartItem = new CartItem();
-            cartItem.setCustomer(customer);
-            cartItem.setProduct(product);
-            cartItem.setQuantity(request.getQuantity());
-        }
-
-        // 3. Save or update the cart item in the database
-        CartItem savedCartItem = cartItemRepository.save(cartItem);
+        // 3. Read the resulting line back for the response
+        CartItem savedCartItem = cartItemRepository.findByCustomerAndProduct(customer, product)
+                .orElseThrow(() -> new IllegalStateException("Cart item missing right after upsert"));
 
         // 4. Convert the saved entity back to a DTO for the response
         return convertToDto(savedCartItem);
     }
 
+    // Add several products to the customer's cart in one transaction (e.g. a whole wishlist or a re-order).
+    // Quantities are added to existing lines with the same atomic upsert as addOrUpdateCartItem, sent as
+    // one JDBC batch, so concurrent batches for the same lines neither lose increments nor collide on
+    // the unique key. All products are checked with one query and all lines read back with another.
+    @Override
+    @Transactional
+    public List<CartItemDto> addOrUpdateCartItems(Long customerId, List<CartItemDto> requests) {
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + customerId));
+        readYourWrites.recordWrite(CART, customerId);
+
+        // 1. Merge repeated products so every product is written once
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItemDto request : requests) {
+            if (request.getProductId() == null) {
+                throw new BadRequestException("Every cart item needs a productId");
+            }
+            quantities.merge(request.getProductId(), request.getQuantity(), Integer::sum);
+        }
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+
+        // 2. Make sure all products exist (they stay in the persistence context for the read-back)
+        Set<Long> found = productRepository.findAllById(quantities.keySet()).stream()
+                .map(Product::getId)
+                .collect(Collectors.toSet());
+        if (found.size() < quantities.size()) {
+            Set<Long> missing = new HashSet<>(quantities.keySet());
+            missing.removeAll(found);
+            throw new ResourceNotFoundException("Products not found with ids: " + missing);
+        }
+
+        // 3. Upsert every line in one batch, in product id order so two batches always lock lines in the same order
+        SqlParameterSource[] upserts = quantities.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("customerId", customerId)
+                        .addValue("productId", entry.getKey())
+                        .addValue("quantity", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(CartItemRepository.UPSERT_QUANTITY_SQL, upserts);
+        quantities.forEach((productId, quantity) -> publishQuantityChange(customerId, productId, 0, quantity));
+
+        // 4. Read the resulting lines back for the response, in the order they were requested
+        Map<Long, CartItem> cartItems = cartItemRepository.findByCustomerAndProductIds(customer, quantities.keySet())
+                .stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), Function.identity()));
+        return quantities.keySet().stream()
+                .map(productId -> convertToDto(cartItems.get(productId)))
+                .collect(Collectors.toList());
+    }
+
     // Update the quantity of a specific cart item
+    @Override
     @Transactional
     public CartItemDto updateCartItemQuantity(Long cartItemId, int newQuantity) {
         CartItem cartItem = cartItemRepository.findById(cartItemId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart item not found with id: " + cartItemId));
+        readYourWrites.recordWrite(CART, cartItem.getCustomer().getId());
+        publishQuantityChange(cartItem.getCustomer().getId(), cartItem.getProduct().getId(),
+                cartItem.getQuantity(), Math.max(newQuantity, 0));
 
         if (newQuantity <= 0) {
             // If quantity is 0 or less, remove the item
@@ -111,20 +222,27 @@ public class CartItemService { // Renamed from CartService to CartItemService fo
     }
 
     // Remove a cart item by its ID
+    @Override
     @Transactional
     public void removeCartItem(Long cartItemId) {
-        if (!cartItemRepository.existsById(cartItemId)) {
-            throw new ResourceNotFoundException("Cart item not found with id: " + cartItemId);
-        }
-        cartItemRepository.deleteById(cartItemId);
+        // Loaded rather than only checked for existence: the delete needs the entity anyway, and we need its customer
+        CartItem cartItem = cartItemRepository.findById(cartItemId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found with id: " + cartItemId));
+        readYourWrites.recordWrite(CART, cartItem.getCustomer().getId());
+        publishQuantityChange(cartItem.getCustomer().getId(), cartItem.getProduct().getId(), cartItem.getQuantity(), 0);
+        cartItemRepository.delete(cartItem);
     }
 
     // Clear all cart items for a customer
+    @Override
     @Transactional
     public void clearCart(Long customerId) {
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + customerId));
-        // Use the custom repository method to delete all items for the customer
-        cartItemRepository.deleteByCustomer(customer);
+        // One DELETE for the whole cart. Only when nothing was deleted do we need the customer lookup,
+        // to tell an empty cart from an unknown customer (a second-level cache hit when hot).
+        if (cartItemRepository.deleteAllByCustomerId(customerId) == 0 && customerRepository.findById(customerId).isEmpty()) {
+            throw new ResourceNotFoundException("Customer not found with id: " + customerId);
+        }
+        readYourWrites.recordWrite(CART, customerId);
+        eventPublisher.publishEvent(CartActivityEvent.cleared(customerId));
     }
 }
@@ -0,0 +1,38 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.dto.CartSummaryDto;
+import com.ecommerce.demo.dto.ResourceVersion;
+
+import java.util.List;
+
+// Shopping cart operations used by CartController.
+// CartItemService reads and writes cart_items directly (the default). When
+// app.cart.write-behind.enabled=true, WriteBehindCartService takes over: it keeps active carts
+// in memory and writes them to cart_items in the background.
+public interface CartService {
+
+    // Get all cart items for a specific customer
+    List<CartItemDto> getCartItemsByCustomer(Long customerId);
+
+    // Line count, total quantity and subtotal of a customer's cart
+    CartSummaryDto getCartSummary(Long customerId);
+
+    // ETag and Last-Modified of the customer's cart, for conditional GETs; cheaper than loading the cart
+    ResourceVersion getCartVersion(Long customerId);
+
+    // Add a product to the customer's cart, or add to its quantity if already present
+    CartItemDto addOrUpdateCartItem(CartItemDto request);
+
+    // Same as addOrUpdateCartItem for several products at once
+    List<CartItemDto> addOrUpdateCartItems(Long customerId, List<CartItemDto> requests);
+
+    // Set the quantity of a cart item; a quantity of 0 or less removes it and returns null
+    CartItemDto updateCartItemQuantity(Long cartItemId, int newQuantity);
+
+    // Remove a cart item by its ID
+    void removeCartItem(Long cartItemId);
+
+    // Remove all cart items of a customer
+    void clearCart(Long customerId);
+}
@@ -0,0 +1,62 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.index.BloomFilter;
+import com.ecommerce.demo.repository.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+// Bloom filter of every customer email, in front of the duplicate-email check in CustomerService.
+// "Definitely not taken" is answered in memory, so a signup with a new email costs no extra query;
+// only a "maybe" (a real duplicate or a false positive) goes on to the database.
+//
+// The filter is loaded from the database once the application has started. Until then every email
+// counts as "maybe", so early signups are still checked. Emails are added before the customer is written:
+// a write that later fails leaves a stale bit behind, which costs a lookup but never lets a duplicate through.
+// The unique index on customers.email stays the final word for races between two signups.
+@Service
+public class CustomerEmailFilter {
+    private static final Logger log = LoggerFactory.getLogger(CustomerEmailFilter.class);
+
+    private final CustomerRepository customerRepository;
+    private final BloomFilter filter;
+    private volatile boolean loaded;
+
+    public CustomerEmailFilter(CustomerRepository customerRepository,
+                               @Value("${app.customers.email-filter.expected-emails:1000000}") long expectedEmails,
+                               @Value("${app.customers.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${app.customers.email-filter.max-bytes:4194304}") long maxBytes) {
+        this.customerRepository = customerRepository;
+        this.filter = new BloomFilter(expectedEmails, falsePositiveRate, maxBytes);
+    }
+
+    // Loads into the live filter rather than building a new one and swapping it in,
+    // so emails added by signups while the load is running are not lost
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.nanoTime();
+        try (Stream<String> emails = customerRepository.streamAllEmails()) {
+            emails.forEach(filter::put);
+        }
+        loaded = true;
+        log.info("Loaded {} customer emails into the signup filter in {} ms ({} KiB, {} hashes, ~{}% false positives)",
+                filter.insertions(), (System.nanoTime() - start) / 1_000_000, filter.sizeInBytes() / 1024,
+                filter.hashCount(), String.format("%.3f", filter.expectedFalsePositiveRate() * 100));
+    }
+
+    // false: no customer has this email, no need to ask the database. true: ask the database.
+    public boolean mightExist(String email) {
+        return !loaded || filter.mightContain(email);
+    }
+
+    public void add(String email) {
+        filter.put(email);
+    }
+}
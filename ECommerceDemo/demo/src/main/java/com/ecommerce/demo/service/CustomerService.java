@@ -1,11 +1,25 @@
 package com.ecommerce.demo.service;
 
+import com.ecommerce.demo.dto.CursorPage;
 import com.ecommerce.demo.dto.CustomerDto;
 import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.event.CustomerChangedEvent;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.exception.DuplicateResourceException;
 import com.ecommerce.demo.exception.ResourceNotFoundException;
+import com.ecommerce.demo.repository.CartItemRepository;
 import com.ecommerce.demo.repository.CustomerRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -13,12 +27,37 @@ import java.util.stream.Collectors;
 // Marks this class as a Spring service (business logic layer)
 @Service
 public class CustomerService {
+    private static final String DELETE_SQL = "DELETE FROM customers WHERE id = ?";
+
     // Repository for database operations related to Customer entities
     private final CustomerRepository customerRepository;
+    // In-memory "is this email new?" check in front of the database
+    private final CustomerEmailFilter emailFilter;
+    // Tells in-memory views of the customers (the name typeahead) about changes
+    private final ApplicationEventPublisher eventPublisher;
+    // A deleted customer's cart goes with them
+    private final CartItemRepository cartItemRepository;
+    // deleteCustomer commits the cart line chunks one by one; the last one goes with the customer
+    private final TransactionTemplate transactionTemplate;
+    private final int cartDeleteChunkSize;
+    // Deletes the customer row by id, and evicts it from the second-level cache afterwards (see deleteCustomer)
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
 
     // Constructor injection: Spring provides the repository instance
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository, CustomerEmailFilter emailFilter,
+                           ApplicationEventPublisher eventPublisher, CartItemRepository cartItemRepository,
+                           PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate,
+                           EntityManagerFactory entityManagerFactory,
+                           @Value("${app.cart.delete-chunk-size:1000}") int cartDeleteChunkSize) {
         this.customerRepository = customerRepository;
+        this.emailFilter = emailFilter;
+        this.eventPublisher = eventPublisher;
+        this.cartItemRepository = cartItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cartDeleteChunkSize = cartDeleteChunkSize;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     // ===========================
@@ -48,6 +87,35 @@ public class CustomerService {
         return customer;
     }
 
+    // Throws 409 if another customer already has this email (customerId is the one being updated, or null).
+    // The Bloom filter answers the common "new email" case without a query; only a "maybe" hits the index.
+    // The email is then added to the filter before it is written, so a concurrent signup sees it.
+    private void claimEmail(String email, Long customerId) {
+        if (email == null) {
+            return;
+        }
+        if (emailFilter.mightExist(email)) {
+            boolean taken = customerId == null
+                    ? customerRepository.existsByEmail(email)
+                    : customerRepository.existsByEmailAndIdNot(email, customerId);
+            if (taken) {
+                throw duplicateEmail(email);
+            }
+        }
+        emailFilter.add(email);
+    }
+
+    // Two signups with the same email can both pass claimEmail(); the unique index rejects the second one
+    private static boolean isDuplicateEmail(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && violation.getConstraintName() != null
+                && violation.getConstraintName().toLowerCase(Locale.ROOT).contains("uk_customers_email");
+    }
+
+    private static DuplicateResourceException duplicateEmail(String email) {
+        return new DuplicateResourceException("A customer with email " + email + " already exists");
+    }
+
     // ===========================
     // MAIN SERVICE METHODS (CRUD)
     // ===========================
@@ -62,6 +130,27 @@ public class CustomerService {
                 .collect(Collectors.toList());
     }
 
+    // Get one page of customers using keyset pagination.
+    // sort is "id" (default) or "name"; after is the nextCursor of the previous page.
+    @Transactional(readOnly = true)
+    public CursorPage<CustomerDto> getCustomersPage(String after, Integer size, String sort) {
+        int pageSize = PageCursor.clampPageSize(size);
+        String sortKey = sort == null ? "id" : sort.toLowerCase(Locale.ROOT);
+        PageCursor cursor = after == null ? null : PageCursor.decode(after, sortKey);
+        Limit limit = Limit.of(pageSize + 1); // One extra row tells us whether there is a next page
+
+        List<Customer> rows = switch (sortKey) {
+            case "id" -> customerRepository.findByIdGreaterThanOrderByIdAsc(cursor == null ? 0L : cursor.id(), limit);
+            case "name" -> cursor == null
+                    ? customerRepository.findFirstPageOrderByName(limit)
+                    : customerRepository.findPageOrderByNameAfter(cursor.key(), cursor.id(), limit);
+            default -> throw new BadRequestException("Unsupported sort '" + sort + "', expected id or name");
+        };
+
+        return PageCursor.toPage(rows, pageSize, this::convertToDto,
+                last -> new PageCursor(sortKey, "name".equals(sortKey) ? last.getName() : null, last.getId()));
+    }
+
     // Get a single customer by their ID.
     // Used to view or manage a specific customer.
     @Transactional(readOnly = true)
@@ -79,10 +168,22 @@ public class CustomerService {
     public CustomerDto createCustomer(CustomerDto customerDto) {
         // Convert the DTO to a Customer entity for saving (write)
         Customer customer = convertToEntity(customerDto);
-        // Save the new customer to the database
-        Customer savedCustomer = customerRepository.save(customer);
+        // Emails are unique: 409 if it is already taken
+        claimEmail(customer.getEmail(), null);
+        // Save the new customer to the database (IDENTITY ids, so the INSERT runs right here)
+        Customer savedCustomer;
+        try {
+            savedCustomer = customerRepository.save(customer);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateEmail(e)) {
+                throw duplicateEmail(customer.getEmail());
+            }
+            throw e;
+        }
         // Convert the saved Customer entity back to a DTO for read
-        return convertToDto(savedCustomer);
+        CustomerDto createdCustomer = convertToDto(savedCustomer);
+        eventPublisher.publishEvent(CustomerChangedEvent.created(createdCustomer));
+        return createdCustomer;
     }
 
     // Update an existing customer by their ID, using data from a CustomerDto.
@@ -93,25 +194,53 @@ public class CustomerService {
         Customer existingCustomer = customerRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
 
+        // Changing the email must not take one that another customer already has
+        if (!Objects.equals(existingCustomer.getEmail(), customerDto.getEmail())) {
+            claimEmail(customerDto.getEmail(), id);
+        }
+
         // Update the customer's fields with the new values from the DTO
         existingCustomer.setName(customerDto.getName());
         existingCustomer.setEmail(customerDto.getEmail());
 
-        // Save the updated customer back to the database
-        Customer savedCustomer = customerRepository.save(existingCustomer);
+        // Save the updated customer back to the database. Flushed here rather than at commit,
+        // so a unique-index violation can still be turned into a 409.
+        Customer savedCustomer;
+        try {
+            savedCustomer = customerRepository.saveAndFlush(existingCustomer);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateEmail(e)) {
+                throw duplicateEmail(customerDto.getEmail());
+            }
+            throw e;
+        }
         // Convert the updated Customer entity to a DTO for read
-        return convertToDto(savedCustomer);
+        CustomerDto updatedCustomer = convertToDto(savedCustomer);
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(updatedCustomer));
+        return updatedCustomer;
     }
 
     // Delete a customer by their ID.
     // Typically used by admin to remove a customer record.
-    @Transactional
+    // Cart lines in committed chunks, the last one together with the customer (see ProductService.deleteProduct)
     public void deleteCustomer(Long id) {
-        // Check if the customer exists before trying to delete
-        if (!customerRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Customer not found with id: " + id);
-        }
-        // Delete the customer from the database
-        customerRepository.deleteById(id);
+        boolean customerDeleted;
+        do {
+            customerDeleted = transactionTemplate.execute(status -> {
+                if (cartItemRepository.deleteChunkByCustomerId(id, cartDeleteChunkSize) == cartDeleteChunkSize) {
+                    return false; // There may be more
+                }
+                // Without loading the customer, and without Hibernate dropping every cached customer
+                if (jdbcTemplate.update(DELETE_SQL, id) == 0) {
+                    throw new ResourceNotFoundException("Customer not found with id: " + id);
+                }
+                eventPublisher.publishEvent(CustomerChangedEvent.deleted(id));
+                return true;
+            });
+        } while (!customerDeleted);
+        // The customer and any cached findByEmail result, once committed
+        org.hibernate.Cache cache = entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class);
+        cache.evictEntityData(Customer.class, id);
+        cache.evictQueryRegions();
     }
 }
@@ -0,0 +1,100 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CustomerSuggestionDto;
+import com.ecommerce.demo.event.CustomerChangedEvent;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.index.CustomerNameTrie;
+import com.ecommerce.demo.repository.CustomerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// Customer name typeahead served from the in-memory CustomerNameTrie.
+// The trie is loaded from the database once at startup and then kept up to date
+// from the CustomerChangedEvents published by CustomerService.
+// Changes that arrive while the load is reading the table are applied at once and also buffered, then
+// replayed when the load is done: the load may have put back a name that was changed or deleted meanwhile.
+@Service
+public class CustomerSuggestService {
+    private static final Logger log = LoggerFactory.getLogger(CustomerSuggestService.class);
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final CustomerRepository customerRepository;
+    private final CustomerNameTrie trie;
+    // Guards pendingChanges, which is non-null while the load runs
+    private final ReentrantLock changeLock = new ReentrantLock();
+    private List<CustomerChangedEvent> pendingChanges;
+
+    public CustomerSuggestService(CustomerRepository customerRepository,
+                                  @Value("${app.customers.suggest.top-k:10}") int topK) {
+        this.customerRepository = customerRepository;
+        this.trie = new CustomerNameTrie(topK);
+    }
+
+    // Loads into the live trie, so suggestions work for the customers read so far
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.nanoTime();
+        changeLock.lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            changeLock.unlock();
+        }
+        try (Stream<CustomerSuggestionDto> customers = customerRepository.streamAllNames()) {
+            customers.forEach(customer -> trie.put(customer.getId(), customer.getName()));
+        } finally {
+            changeLock.lock();
+            try {
+                // Replayed in order, so the last change to a customer wins over what the load read
+                pendingChanges.forEach(this::apply);
+                pendingChanges = null;
+            } finally {
+                changeLock.unlock();
+            }
+        }
+        log.info("Indexed {} customer names for suggestions in {} ms", trie.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Runs after the customer change has been committed
+    @TransactionalEventListener
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        changeLock.lock();
+        try {
+            apply(event);
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+            }
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    private void apply(CustomerChangedEvent event) {
+        if (event.type() == CustomerChangedEvent.Type.DELETED) {
+            trie.remove(event.customerId());
+        } else {
+            trie.put(event.customerId(), event.customer().getName());
+        }
+    }
+
+    // Customers with a name word starting with prefix, best match first
+    public List<CustomerSuggestionDto> suggest(String prefix, Integer limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new BadRequestException("Suggest prefix must not be empty");
+        }
+        int maxResults = limit == null || limit <= 0 ? Math.min(DEFAULT_LIMIT, trie.topK()) : Math.min(limit, trie.topK());
+        return trie.suggest(prefix, maxResults);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.config.BulkheadDataSource;
+import com.ecommerce.demo.dto.BulkheadStatsDto;
+import com.ecommerce.demo.dto.SlowQueryDto;
+import com.ecommerce.demo.exception.ResourceNotFoundException;
+import com.ecommerce.demo.metrics.SlowQueryLog;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+
+// Runtime statistics of the database access layer
+@Service
+public class DatabaseStatisticsService {
+    private final DataSource dataSource;
+    private final SlowQueryLog slowQueryLog;
+
+    public DatabaseStatisticsService(DataSource dataSource, SlowQueryLog slowQueryLog) {
+        this.dataSource = dataSource;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    // Recent statements slower than app.sql.slow-query.threshold-ms (plus sampled fast ones), newest first
+    public List<SlowQueryDto> getSlowQueries(Integer limit) {
+        List<SlowQueryDto> queries = slowQueryLog.getEntries();
+        return limit == null || limit >= queries.size() ? queries : queries.subList(0, Math.max(0, limit));
+    }
+
+    // Permit usage and queue times of the connection bulkhead (app.db.bulkhead.enabled)
+    public BulkheadStatsDto getBulkheadStatistics() {
+        try {
+            if (!dataSource.isWrapperFor(BulkheadDataSource.class)) {
+                throw new ResourceNotFoundException("Database bulkhead is not enabled (app.db.bulkhead.enabled)");
+            }
+            return dataSource.unwrap(BulkheadDataSource.class).getStats();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not inspect the DataSource", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CursorPage;
+import com.ecommerce.demo.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+// Opaque keyset cursor used by the paginated list endpoints.
+// It remembers the sort key, the value of that key on the last row returned and the last row's id,
+// so the next page resumes with "WHERE (key, id) > (lastKey, lastId)" instead of an OFFSET scan.
+// Clients only ever see the Base64 token and pass it back unchanged as ?after=.
+public record PageCursor(String sort, String key, long id) {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public String encode() {
+        // Key goes last so values containing the separator (e.g. product names) survive the round trip
+        String raw = sort + "|" + id + "|" + (key == null ? "" : key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token, String expectedSort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || !parts[0].equals(expectedSort)) {
+                throw new BadRequestException("Page cursor does not match sort '" + expectedSort + "'");
+            }
+            return new PageCursor(parts[0], parts[2], Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) { // Also covers NumberFormatException
+            throw new BadRequestException("Invalid page cursor: " + token);
+        }
+    }
+
+    public double keyAsDouble() {
+        try {
+            return Double.parseDouble(key);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid page cursor for sort '" + sort + "'");
+        }
+    }
+
+    // Null or non-positive sizes fall back to the default; anything above the maximum is capped
+    public static int clampPageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    // Builds a page from rows fetched with a limit of pageSize + 1.
+    // The extra row only tells us that another page exists; it is not returned.
+    public static <E, D> CursorPage<D> toPage(List<E> rows, int pageSize,
+                                              Function<E, D> mapper, Function<E, PageCursor> cursorOf) {
+        boolean hasMore = rows.size() > pageSize;
+        List<E> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? cursorOf.apply(pageRows.get(pageRows.size() - 1)).encode() : null;
+        return new CursorPage<>(pageRows.stream().map(mapper).toList(), nextCursor);
+    }
+}
@@ -0,0 +1,341 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ImportErrorDto;
+import com.ecommerce.demo.dto.ProductImportReportDto;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.event.ProductCatalogImportedEvent;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.exception.ImportInProgressException;
+import com.ecommerce.demo.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bulk product import for nightly catalog feeds (POST /api/products/import).
+//
+// The upload (CSV with a header row, or NDJSON) is parsed while it is being received, row by row,
+// and written with JDBC batch upserts keyed on the product name: new names are inserted, existing
+// ones get the new price and description. Every app.products.import.chunk-size rows are committed
+// in their own short transaction, so the rest of the API keeps working during a long load and a
+// failed import keeps what it committed so far. Invalid rows are skipped and reported with their line.
+//
+// Rows are written with plain SQL, so after every chunk the products it touched are evicted from the
+// second-level cache and the query caches are cleared, and once the import is done a ProductCatalogImportedEvent tells the
+// in-memory indexes to rebuild. Only one import runs at a time; GET /api/products/import/status
+// shows the progress of the running (or last) one.
+@Service
+public class ProductImportService {
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    // Same default values as Hibernate would write; an update bumps version and updated_at like
+    // a Hibernate update, so ETags of changed products change (see Product)
+    private static final String UPSERT_SQL = "INSERT INTO products (name, price, description) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE price = VALUES(price), description = VALUES(description), "
+            + "version = version + 1, updated_at = CURRENT_TIMESTAMP";
+    private static final int MAX_TEXT_LENGTH = 255; // VARCHAR length of name and description
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    private final ReentrantLock importLock = new ReentrantLock();
+    private volatile ImportRun lastRun;
+
+    // A validated row, ready to be written
+    private record ProductRow(long line, String name, double price, String description) {
+    }
+
+    // Progress of one import. Only the importing thread writes it; status requests read it.
+    private final class ImportRun {
+        final String format;
+        final Instant startedAt = Instant.now();
+        final List<ImportErrorDto> errors = Collections.synchronizedList(new ArrayList<>());
+        volatile String status = "RUNNING";
+        volatile Instant finishedAt;
+        volatile String failure;
+        volatile long rowsRead;
+        volatile long rowsImported;
+        volatile long rowsFailed;
+        volatile long chunksCommitted;
+
+        ImportRun(String format) {
+            this.format = format;
+        }
+
+        void reject(long line, String message) {
+            rowsFailed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ImportErrorDto(line, message));
+            }
+        }
+
+        ProductImportReportDto toDto() {
+            ProductImportReportDto report = new ProductImportReportDto();
+            report.setStatus(status);
+            report.setFormat(format);
+            report.setStartedAt(startedAt);
+            report.setFinishedAt(finishedAt);
+            report.setRowsRead(rowsRead);
+            report.setRowsImported(rowsImported);
+            report.setRowsFailed(rowsFailed);
+            report.setChunksCommitted(chunksCommitted);
+            report.setFailure(failure);
+            synchronized (errors) {
+                report.setErrors(List.copyOf(errors));
+            }
+            return report;
+        }
+    }
+
+    public ProductImportService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                EntityManagerFactory entityManagerFactory,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper,
+                                @Value("${app.products.import.chunk-size:1000}") int chunkSize,
+                                @Value("${app.products.import.max-reported-errors:100}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    // Import the products in body; contentType selects the format (text/csv or application/x-ndjson).
+    // Returns the final report. Problems with the upload as a whole (unsupported format, missing CSV
+    // columns) are a 400 before anything is written; problems found later end the import as FAILED.
+    public ProductImportReportDto importProducts(InputStream body, MediaType contentType) {
+        String format = formatOf(contentType);
+        if (!importLock.tryLock()) {
+            throw new ImportInProgressException("A product import is already running, see GET /api/products/import/status");
+        }
+        ImportRun run = new ImportRun(format);
+        lastRun = run;
+        try {
+            Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+            Reader reader = new InputStreamReader(body, charset);
+            List<ProductRow> chunk = new ArrayList<>(chunkSize);
+            if (format.equals("csv")) {
+                readCsv(reader, run, chunk);
+            } else {
+                readNdjson(reader, run, chunk);
+            }
+            writeChunk(run, chunk);
+            run.status = "COMPLETED";
+        } catch (BadRequestException e) {
+            run.status = "FAILED";
+            run.failure = e.getMessage();
+            if (run.rowsRead == 0) {
+                throw e; // Nothing happened yet: reject the request itself
+            }
+        } catch (IOException | UncheckedIOException | DataAccessException e) {
+            log.warn("Product import failed after {} rows", run.rowsRead, e);
+            run.status = "FAILED";
+            run.failure = e.getMessage();
+        } finally {
+            run.finishedAt = Instant.now();
+            importLock.unlock();
+            if (run.rowsImported > 0) {
+                eventPublisher.publishEvent(new ProductCatalogImportedEvent(run.rowsImported));
+            }
+        }
+        log.info("Product import {}: {} rows read, {} imported, {} rejected in {} chunks", run.status,
+                run.rowsRead, run.rowsImported, run.rowsFailed, run.chunksCommitted);
+        return run.toDto();
+    }
+
+    // Progress of the running import, or the report of the last one
+    public ProductImportReportDto getStatus() {
+        ImportRun run = lastRun;
+        if (run == null) {
+            throw new ResourceNotFoundException("No product import has run yet");
+        }
+        return run.toDto();
+    }
+
+    // ===========================
+    // PARSING
+    // ===========================
+
+    private static String formatOf(MediaType contentType) {
+        if (contentType != null && contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))) {
+            return "csv";
+        }
+        if (contentType != null && contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)) {
+            return "ndjson";
+        }
+        throw new BadRequestException("Content-Type must be text/csv or " + MediaType.APPLICATION_NDJSON_VALUE);
+    }
+
+    // Header row first; columns are found by name (name, price, description), in any order
+    private void readCsv(Reader reader, ImportRun run, List<ProductRow> chunk) throws IOException {
+        CsvRecordReader csv = new CsvRecordReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return; // Empty upload
+        }
+        List<String> columns = header.stream()
+                .map(column -> column.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT)) // Excel writes a BOM
+                .toList();
+        int nameColumn = columns.indexOf("name");
+        int priceColumn = columns.indexOf("price");
+        int descriptionColumn = columns.indexOf("description");
+        if (nameColumn < 0 || priceColumn < 0) {
+            throw new BadRequestException("CSV header must have name and price columns (description is optional), got: "
+                    + String.join(",", header));
+        }
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue; // Blank line
+            }
+            long line = csv.getRecordLine();
+            run.rowsRead++;
+            if (record.size() != header.size()) {
+                run.reject(line, "Expected " + header.size() + " fields but found " + record.size());
+                continue;
+            }
+            String price = record.get(priceColumn).trim();
+            Double parsedPrice;
+            try {
+                parsedPrice = price.isEmpty() ? null : Double.valueOf(price);
+            } catch (NumberFormatException e) {
+                run.reject(line, "Price is not a number: " + price);
+                continue;
+            }
+            accept(run, chunk, line, record.get(nameColumn),
+                    parsedPrice, descriptionColumn < 0 ? null : record.get(descriptionColumn));
+        }
+    }
+
+    // One JSON object per line: {"name": "...", "price": 9.99, "description": "..."}
+    private void readNdjson(Reader reader, ImportRun run, List<ProductRow> chunk) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        long line = 0;
+        String json;
+        while ((json = lines.readLine()) != null) {
+            line++;
+            if (json.isBlank()) {
+                continue;
+            }
+            run.rowsRead++;
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(json);
+            } catch (JsonProcessingException e) {
+                run.reject(line, "Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            if (!node.isObject()) {
+                run.reject(line, "Expected a JSON object");
+                continue;
+            }
+            JsonNode price = node.path("price");
+            if (!price.isMissingNode() && !price.isNull() && !price.isNumber()) {
+                run.reject(line, "Price is not a number: " + price);
+                continue;
+            }
+            accept(run, chunk, line, node.path("name").isValueNode() ? node.path("name").asText() : null,
+                    price.isNumber() ? price.doubleValue() : null,
+                    node.path("description").isValueNode() ? node.path("description").asText() : null);
+        }
+    }
+
+    // Validate one row and queue it for the current chunk
+    private void accept(ImportRun run, List<ProductRow> chunk, long line, String name, Double price, String description) {
+        String trimmedName = name == null ? "" : name.trim();
+        if (trimmedName.isEmpty()) {
+            run.reject(line, "Name is required");
+        } else if (trimmedName.length() > MAX_TEXT_LENGTH) {
+            run.reject(line, "Name is longer than " + MAX_TEXT_LENGTH + " characters");
+        } else if (price == null || !Double.isFinite(price) || price < 0) {
+            run.reject(line, "Price must be a number of at least 0");
+        } else if (description != null && description.length() > MAX_TEXT_LENGTH) {
+            run.reject(line, "Description is longer than " + MAX_TEXT_LENGTH + " characters");
+        } else {
+            chunk.add(new ProductRow(line, trimmedName, price, description));
+            if (chunk.size() >= chunkSize) {
+                writeChunk(run, chunk);
+            }
+        }
+    }
+
+    // ===========================
+    // WRITING
+    // ===========================
+
+    // Upsert the chunk as one JDBC batch in one transaction, then empty it
+    private void writeChunk(ImportRun run, List<ProductRow> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            chunkTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, chunk.stream().map(ProductImportService::toParameters).toList()));
+            run.rowsImported += chunk.size();
+        } catch (DataIntegrityViolationException e) {
+            // One row the database refuses fails the whole batch: write this chunk row by row to find it.
+            // Any other database error ends the import.
+            for (ProductRow row : chunk) {
+                try {
+                    chunkTransaction.executeWithoutResult(status -> jdbcTemplate.update(UPSERT_SQL, toParameters(row)));
+                    run.rowsImported++;
+                } catch (DataIntegrityViolationException rowError) {
+                    run.reject(row.line(), "Rejected by the database: " + rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        run.chunksCommitted++;
+        evictProductCaches(chunk);
+        chunk.clear();
+    }
+
+    private static Object[] toParameters(ProductRow row) {
+        return new Object[]{row.name(), row.price(), row.description()};
+    }
+
+    // The upserts bypass Hibernate, so the chunk's cached products and cached findByName results may be stale.
+    // The upserts are keyed on the name, so one query finds the ids to evict; the rest of the catalog
+    // stays cached. Rows the database rejected may still evict their namesake, which is harmless.
+    private void evictProductCaches(List<ProductRow> chunk) {
+        String names = String.join(",", Collections.nCopies(chunk.size(), "?"));
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM products WHERE name IN (" + names + ")",
+                Long.class, chunk.stream().map(ProductRow::name).toArray());
+        org.hibernate.Cache cache = entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class);
+        ids.forEach(id -> cache.evictEntityData(Product.class, id));
+        cache.evictQueryRegions();
+    }
+}
@@ -0,0 +1,99 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ResourceVersion;
+import com.ecommerce.demo.event.ProductCatalogImportedEvent;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+// Ready-to-send UTF-8 JSON for GET /products/{id} and the unfiltered product pages.
+// A hit skips the DTO mapping and Jackson entirely; the controller writes the bytes as they are.
+//
+// Every entry remembers the ETag it was serialized for and is only served while that is still the
+// current version (which the controller looks up anyway for conditional GETs). So a reader that
+// caches an old body just as a writer commits can never make the cache serve stale JSON.
+// The events below only free the memory of entries that can no longer be used.
+//
+// The cache is bounded by the total size of the JSON it holds (app.products.json-cache.max-bytes);
+// Caffeine evicts the least valuable entries beyond that. Hit/miss counts are published as cache.* metrics.
+@Service
+public class ProductJsonCache {
+    // Rough per-entry cost on top of the JSON itself (entry, key, ETag)
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Object, CachedJson> cache;
+
+    private record CachedJson(String etag, byte[] json) {
+    }
+
+    // One page of the product list, as requested
+    private record PageKey(String sort, Integer size, String after) {
+    }
+
+    public ProductJsonCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                            @Value("${app.products.json-cache.max-bytes:33554432}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Object key, CachedJson value) -> value.json().length + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products.json");
+    }
+
+    // The product as JSON, serialized by loader only if there is no entry for this version
+    public byte[] getProduct(Long id, ResourceVersion version, Supplier<?> loader) {
+        return get(id, version, loader);
+    }
+
+    // A page of the product list as JSON; version is the catalog version, which covers every page
+    public byte[] getPage(String after, Integer size, String sort, ResourceVersion version, Supplier<?> loader) {
+        return get(new PageKey(sort.toLowerCase(Locale.ROOT), size, after), version, loader);
+    }
+
+    // Runs after the product change has been committed: the product's own entry and every page are outdated
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.type() != ProductChangedEvent.Type.CREATED) {
+            cache.invalidate(event.productId());
+        }
+        cache.asMap().keySet().removeIf(key -> key instanceof PageKey);
+    }
+
+    // Imports upsert with plain SQL and do not say which products they touched
+    @EventListener
+    public void onCatalogImported(ProductCatalogImportedEvent event) {
+        cache.invalidateAll();
+    }
+
+    private byte[] get(Object key, ResourceVersion version, Supplier<?> loader) {
+        CachedJson cached = cache.getIfPresent(key);
+        if (cached != null && cached.etag().equals(version.etag())) {
+            return cached.json();
+        }
+        byte[] json = serialize(loader.get());
+        cache.put(key, new CachedJson(version.etag(), json));
+        return json;
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.PriceBucketDto;
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.dto.ProductPage;
+import com.ecommerce.demo.event.ProductCatalogImportedEvent;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.index.ProductPriceIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Price-range filtering and price histogram facets served from the in-memory ProductPriceIndex.
+// Only the products on the requested page are loaded from the database.
+// Rebuilds work like ProductSearchService's: changes that arrive while the catalog is being read are
+// applied to the old index and buffered, then replayed on the new one just before it is swapped in.
+@Service
+public class ProductPriceFilterService {
+    private static final Logger log = LoggerFactory.getLogger(ProductPriceFilterService.class);
+    private static final int DEFAULT_BUCKETS = 10;
+    private static final int MAX_BUCKETS = 50;
+
+    private final ProductService productService;
+    private volatile ProductPriceIndex index = new ProductPriceIndex();
+    // One rebuild at a time (startup and imports can overlap)
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    // Guards the swap and pendingChanges, which is non-null while a rebuild runs
+    private final ReentrantLock changeLock = new ReentrantLock();
+    private List<ProductChangedEvent> pendingChanges;
+
+    public ProductPriceFilterService(ProductService productService) {
+        this.productService = productService;
+    }
+
+    // Load every product's price once the application has started
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        rebuildLock.lock();
+        try {
+            rebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        changeLock.lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            changeLock.unlock();
+        }
+        ProductPriceIndex.Builder builder = new ProductPriceIndex.Builder();
+        try {
+            productService.forEachProduct(product -> builder.add(product.getId(), product.getPrice()));
+        } catch (RuntimeException e) {
+            changeLock.lock();
+            try {
+                pendingChanges = null; // The old index stays, and it has every change
+            } finally {
+                changeLock.unlock();
+            }
+            throw e;
+        }
+        ProductPriceIndex rebuilt = new ProductPriceIndex();
+        rebuilt.rebuild(builder);
+        changeLock.lock();
+        try {
+            // Replayed in order, so the last change to a product wins, whether or not the rebuild already saw it
+            pendingChanges.forEach(change -> apply(rebuilt, change));
+            pendingChanges = null;
+            index = rebuilt;
+        } finally {
+            changeLock.unlock();
+        }
+        log.info("Indexed {} product prices in {} ms", builder.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Rebuild after a bulk import, like ProductSearchService; the old index serves until the new one is swapped in
+    @Async
+    @EventListener
+    public void onCatalogImported(ProductCatalogImportedEvent event) {
+        rebuildIndex();
+    }
+
+    // Runs after the product change has been committed
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        changeLock.lock();
+        try {
+            apply(index, event);
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+            }
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    private static void apply(ProductPriceIndex index, ProductChangedEvent event) {
+        if (event.type() == ProductChangedEvent.Type.DELETED) {
+            index.remove(event.productId());
+        } else {
+            index.put(event.productId(), event.product().getPrice());
+        }
+    }
+
+    // Get one page of products with minPrice <= price <= maxPrice, cheapest first.
+    // Either bound may be null. The histogram and totalMatches always cover the whole range.
+    public ProductPage getProductsByPrice(Double minPrice, Double maxPrice, String after, Integer size, Integer buckets) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new BadRequestException("minPrice must not be greater than maxPrice");
+        }
+        int pageSize = PageCursor.clampPageSize(size);
+        int bucketCount = buckets == null || buckets <= 0 ? DEFAULT_BUCKETS : Math.min(buckets, MAX_BUCKETS);
+
+        ProductPriceIndex.Snapshot prices = index.snapshot(); // Use one consistent view for the whole request
+        int rangeStart = minPrice == null ? 0 : prices.lowerBound(minPrice);
+        int rangeEnd = maxPrice == null ? prices.size() : prices.upperBound(maxPrice);
+        if (rangeStart >= rangeEnd) {
+            return new ProductPage(List.of(), null, 0, List.of());
+        }
+
+        int pageStart = rangeStart;
+        if (after != null) {
+            PageCursor cursor = PageCursor.decode(after, "price");
+            pageStart = Math.max(rangeStart, prices.positionAfter(cursor.keyAsDouble(), cursor.id()));
+        }
+        int pageEnd = Math.min(pageStart + pageSize, rangeEnd);
+
+        List<Long> pageIds = new ArrayList<>(pageEnd - pageStart);
+        for (int position = pageStart; position < pageEnd; position++) {
+            pageIds.add(prices.idAt(position));
+        }
+        String nextCursor = pageEnd < rangeEnd
+                ? new PageCursor("price", Double.toString(prices.priceAt(pageEnd - 1)), prices.idAt(pageEnd - 1)).encode()
+                : null;
+        List<ProductDto> items = pageIds.isEmpty() ? List.of() : productService.getProductsByIds(pageIds);
+
+        return new ProductPage(items, nextCursor, rangeEnd - rangeStart,
+                histogram(prices, rangeStart, rangeEnd, bucketCount));
+    }
+
+    // Equal-width buckets between the cheapest and the most expensive product in the range.
+    // Each bucket count is two binary searches, so this does not depend on how many products match.
+    private List<PriceBucketDto> histogram(ProductPriceIndex.Snapshot prices, int rangeStart, int rangeEnd, int bucketCount) {
+        double low = prices.priceAt(rangeStart);
+        double high = prices.priceAt(rangeEnd - 1);
+        if (low == high) {
+            return List.of(new PriceBucketDto(low, high, rangeEnd - rangeStart));
+        }
+        double width = (high - low) / bucketCount;
+        List<PriceBucketDto> histogram = new ArrayList<>(bucketCount);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            double from = low + bucket * width;
+            boolean last = bucket == bucketCount - 1;
+            double to = last ? high : low + (bucket + 1) * width;
+            int count = last
+                    ? rangeEnd - Math.max(rangeStart, prices.lowerBound(from))
+                    : prices.count(from, to);
+            histogram.add(new PriceBucketDto(from, to, count));
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,125 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.event.ProductCatalogImportedEvent;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.index.ProductSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Full-text product search served from the in-memory ProductSearchIndex.
+// The index is loaded from the database once at startup and then kept up to date
+// from the ProductChangedEvents published by ProductService. After a bulk import it is rebuilt.
+// Changes that arrive while a rebuild is reading the catalog are applied to the old index (still the one
+// searched) and also buffered, then replayed on the new index just before it is swapped in, so none is lost.
+@Service
+public class ProductSearchService {
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchService.class);
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    private final ProductService productService;
+    private volatile ProductSearchIndex index = new ProductSearchIndex();
+    // One rebuild at a time (startup and imports can overlap)
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    // Guards the swap and pendingChanges, which is non-null while a rebuild runs
+    private final ReentrantLock changeLock = new ReentrantLock();
+    private List<ProductChangedEvent> pendingChanges;
+
+    public ProductSearchService(ProductService productService) {
+        this.productService = productService;
+    }
+
+    // Build the index from the catalog once the application has started
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        rebuildLock.lock();
+        try {
+            rebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        changeLock.lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            changeLock.unlock();
+        }
+        // Build a new index and swap it in, so searches keep using the old one until it is complete
+        ProductSearchIndex rebuilt = new ProductSearchIndex();
+        try {
+            productService.forEachProduct(rebuilt::put);
+        } catch (RuntimeException e) {
+            changeLock.lock();
+            try {
+                pendingChanges = null; // The old index stays, and it has every change
+            } finally {
+                changeLock.unlock();
+            }
+            throw e;
+        }
+        changeLock.lock();
+        try {
+            // Replayed in order, so the last change to a product wins, whether or not the rebuild already saw it
+            pendingChanges.forEach(change -> apply(rebuilt, change));
+            pendingChanges = null;
+            index = rebuilt;
+        } finally {
+            changeLock.unlock();
+        }
+        log.info("Indexed {} products for search in {} ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Imports write products with plain SQL and publish no ProductChangedEvents, so rebuild from the
+    // database, in the background so the import request does not wait for it
+    @Async
+    @EventListener
+    public void onCatalogImported(ProductCatalogImportedEvent event) {
+        rebuildIndex();
+    }
+
+    // Runs after the product change has been committed
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        changeLock.lock();
+        try {
+            apply(index, event);
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+            }
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    private static void apply(ProductSearchIndex index, ProductChangedEvent event) {
+        if (event.type() == ProductChangedEvent.Type.DELETED) {
+            index.remove(event.productId());
+        } else {
+            index.put(event.product());
+        }
+    }
+
+    // Search name and description, best match first
+    public List<ProductDto> search(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Search query 'q' must not be empty");
+        }
+        int maxResults = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return index.search(query, maxResults);
+    }
+}
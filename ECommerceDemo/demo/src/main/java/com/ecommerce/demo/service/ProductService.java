@@ -1,24 +1,69 @@
 package com.ecommerce.demo.service;
 
+import com.ecommerce.demo.dto.CursorPage;
 import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.dto.ResourceVersion;
 import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.exception.DuplicateResourceException;
 import com.ecommerce.demo.exception.ResourceNotFoundException;
+import com.ecommerce.demo.repository.CartItemRepository;
 import com.ecommerce.demo.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 // Marks this class as a service component (business logic layer)
 @Service
 public class ProductService {
+    private static final String DELETE_SQL = "DELETE FROM products WHERE id = ?";
+
     // Handles database operations for Product entities
     private final ProductRepository productRepository;
+    // Used to detach streamed entities so the persistence context does not grow with the catalog
+    private final EntityManager entityManager;
+    // Publishes ProductChangedEvents so in-memory views of the catalog (search index, ...) stay in sync
+    private final ApplicationEventPublisher eventPublisher;
+    // Cart lines of a deleted product go with it
+    private final CartItemRepository cartItemRepository;
+    // deleteProduct commits the cart line chunks one by one; the last one goes with the product
+    private final TransactionTemplate transactionTemplate;
+    private final int cartDeleteChunkSize;
+    // Deletes the product row by id, see deleteProduct
+    private final JdbcTemplate jdbcTemplate;
 
     // Constructor injection: Spring provides the repository
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, EntityManager entityManager,
+                          ApplicationEventPublisher eventPublisher, CartItemRepository cartItemRepository,
+                          PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate,
+                          @Value("${app.cart.delete-chunk-size:1000}") int cartDeleteChunkSize) {
         this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.cartItemRepository = cartItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cartDeleteChunkSize = cartDeleteChunkSize;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     // ===========================
@@ -27,7 +72,7 @@ public class ProductService {
 
     // Helper method to convert a Product entity to ProductDto.
     // Used when reading data from the database to send to the client (read operations).
-    private ProductDto convertToDto(Product product) {
+    ProductDto convertToDto(Product product) { // Package-private for DtoMappingBenchmark
         ProductDto dto = new ProductDto();
         dto.setId(product.getId());
         dto.setName(product.getName());
@@ -50,6 +95,17 @@ public class ProductService {
         return product;
     }
 
+    // Product names are unique (the catalog key of bulk imports); the unique index rejects a taken one
+    private static boolean isDuplicateName(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && violation.getConstraintName() != null
+                && violation.getConstraintName().toLowerCase(Locale.ROOT).contains("uk_products_name");
+    }
+
+    private static DuplicateResourceException duplicateName(String name) {
+        return new DuplicateResourceException("A product named " + name + " already exists");
+    }
+
     // ===========================
     // MAIN SERVICE METHODS (CRUD)
     // ===========================
@@ -64,6 +120,54 @@ public class ProductService {
                 .collect(Collectors.toList());
     }
 
+    // Get one page of products using keyset pagination.
+    // sort is one of "id" (default), "price" or "name"; after is the nextCursor of the previous page.
+    @Transactional(readOnly = true)
+    public CursorPage<ProductDto> getProductsPage(String after, Integer size, String sort) {
+        int pageSize = PageCursor.clampPageSize(size);
+        String sortKey = sort == null ? "id" : sort.toLowerCase(Locale.ROOT);
+        PageCursor cursor = after == null ? null : PageCursor.decode(after, sortKey);
+        Limit limit = Limit.of(pageSize + 1); // One extra row tells us whether there is a next page
+
+        List<Product> rows = switch (sortKey) {
+            case "id" -> productRepository.findByIdGreaterThanOrderByIdAsc(cursor == null ? 0L : cursor.id(), limit);
+            case "price" -> cursor == null
+                    ? productRepository.findFirstPageOrderByPrice(limit)
+                    : productRepository.findPageOrderByPriceAfter(cursor.keyAsDouble(), cursor.id(), limit);
+            case "name" -> cursor == null
+                    ? productRepository.findFirstPageOrderByName(limit)
+                    : productRepository.findPageOrderByNameAfter(cursor.key(), cursor.id(), limit);
+            default -> throw new BadRequestException("Unsupported sort '" + sort + "', expected id, price or name");
+        };
+
+        return PageCursor.toPage(rows, pageSize, this::convertToDto, last -> new PageCursor(sortKey,
+                switch (sortKey) {
+                    case "price" -> Double.toString(last.getPrice());
+                    case "name" -> last.getName();
+                    default -> null;
+                }, last.getId()));
+    }
+
+    // Hand every product to the consumer one at a time, in id order.
+    // Used for full-catalog exports: rows are streamed from a JDBC cursor and detached right after
+    // being converted, so memory use stays flat no matter how large the catalog is.
+    // The second-level cache is left alone (CacheMode.IGNORE): putting every product into it would evict
+    // the hot ones. The session's mode, not a query hint: Hibernate takes it from there for streamed rows.
+    @Transactional(readOnly = true)
+    public void forEachProduct(Consumer<ProductDto> consumer) {
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        try (Stream<Product> products = productRepository.streamAllOrderedById()) {
+            products.forEach(product -> {
+                consumer.accept(convertToDto(product));
+                entityManager.detach(product);
+            });
+        } finally {
+            session.setCacheMode(cacheMode); // With open-in-view the session outlives this transaction
+        }
+    }
+
     // Get a single product by its ID.
     // Used by admin to view/manage a specific product.
     @Transactional(readOnly = true)
@@ -75,16 +179,55 @@ public class ProductService {
         return convertToDto(product);
     }
 
+    // ETag and Last-Modified of a single product for conditional GETs.
+    // Served from the second-level cache when hot, so an unchanged product costs no query at all.
+    @Transactional(readOnly = true)
+    public ResourceVersion getProductVersion(Long id) {
+        Product product = productRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
+        return new ResourceVersion(product.getId() + "-" + product.getVersion(), product.getUpdatedAt());
+    }
+
+    // ETag and Last-Modified of the whole catalog, used for the product list: any product
+    // change makes every page stale, which keeps the check down to one aggregate query
+    @Transactional(readOnly = true)
+    public ResourceVersion getCatalogVersion() {
+        return productRepository.findCatalogVersion();
+    }
+
+    // Get the products with the given IDs, in the same order as the IDs.
+    // IDs that no longer exist are skipped. Used to load one page of results from an in-memory index.
+    @Transactional(readOnly = true)
+    public List<ProductDto> getProductsByIds(List<Long> ids) {
+        Map<Long, Product> productsById = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+    }
+
     // Create a new product using data from a ProductDto.
     // Only admin should be able to do this.
     @Transactional
     public ProductDto createProduct(ProductDto productDto) {
         // Convert the DTO to a Product entity for saving (write)
         Product product = convertToEntity(productDto);
-        // Save the new product to the database
-        Product savedProduct = productRepository.save(product);
+        // Save the new product to the database (IDENTITY ids, so the INSERT runs right here); 409 if the name is taken
+        Product savedProduct;
+        try {
+            savedProduct = productRepository.save(product);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateName(e)) {
+                throw duplicateName(product.getName());
+            }
+            throw e;
+        }
         // Convert the saved Product entity back to a DTO for read
-        return convertToDto(savedProduct);
+        ProductDto createdProduct = convertToDto(savedProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.created(createdProduct));
+        return createdProduct;
     }
 
     // Update an existing product by its ID, using data from a ProductDto.
@@ -100,21 +243,49 @@ public class ProductService {
         existingProduct.setPrice(productDto.getPrice());
         existingProduct.setDescription(productDto.getDescription());
 
-        // Save the updated product back to the database
-        Product savedProduct = productRepository.save(existingProduct);
+        // Save the updated product back to the database. Flushed here rather than at commit,
+        // so a unique-index violation on the name can still be turned into a 409.
+        Product savedProduct;
+        try {
+            savedProduct = productRepository.saveAndFlush(existingProduct);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateName(e)) {
+                throw duplicateName(productDto.getName());
+            }
+            throw e;
+        }
         // Convert the updated Product entity to a DTO for read
-        return convertToDto(savedProduct);
+        ProductDto updatedProduct = convertToDto(savedProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.updated(updatedProduct));
+        return updatedProduct;
     }
 
     // Delete a product by its ID.
     // Only admin should be able to do this.
-    @Transactional
+    // Not @Transactional: the cart lines go first, app.cart.delete-chunk-size per statement, each chunk
+    // committed on its own, so a product in many carts never holds thousands of row locks at once.
+    // The chunk that deletes fewer than that is the last one, and the product is deleted in its transaction.
+    // An unknown id has no cart lines, so it costs one empty chunk and a DELETE that finds nothing, with nothing committed.
     public void deleteProduct(Long id) {
-        // Check if the product exists before trying to delete
-        if (!productRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Product not found with id: " + id);
-        }
-        // Delete the product from the database
-        productRepository.deleteById(id);
+        boolean productDeleted;
+        do {
+            productDeleted = transactionTemplate.execute(status -> {
+                if (cartItemRepository.deleteChunkByProductId(id, cartDeleteChunkSize) == cartDeleteChunkSize) {
+                    return false; // There may be more
+                }
+                // Plain SQL instead of loading the entity for delete(): a JPQL or repository bulk DELETE would make
+                // Hibernate drop every cached product, so only this one is evicted below
+                if (jdbcTemplate.update(DELETE_SQL, id) == 0) {
+                    throw new ResourceNotFoundException("Product not found with id: " + id);
+                }
+                eventPublisher.publishEvent(ProductChangedEvent.deleted(id));
+                return true;
+            });
+        } while (!productDeleted);
+        // After the commit, so a concurrent read cannot put the deleted row back. The query results go too:
+        // a cached findByName may still point at the product.
+        org.hibernate.Cache cache = entityManager.getEntityManagerFactory().getCache().unwrap(org.hibernate.Cache.class);
+        cache.evictEntityData(Product.class, id);
+        cache.evictQueryRegions();
     }
 }
@@ -0,0 +1,737 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.dto.CartSummaryDto;
+import com.ecommerce.demo.dto.ResourceVersion;
+import com.ecommerce.demo.entity.CartItem;
+import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.event.CartActivityEvent;
+import com.ecommerce.demo.event.CartsExpiredEvent;
+import com.ecommerce.demo.event.CustomerChangedEvent;
+import com.ecommerce.demo.event.ProductCatalogImportedEvent;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.exception.ResourceNotFoundException;
+import com.ecommerce.demo.repository.CartItemRepository;
+import com.ecommerce.demo.repository.CustomerRepository;
+import com.ecommerce.demo.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Write-behind CartService, enabled with app.cart.write-behind.enabled=true.
+//
+// Active carts live in memory, keyed by customer id. Reads are served from memory and writes only
+// change memory; changed carts are marked dirty and written to cart_items in JDBC batches by a
+// background flush every app.cart.write-behind.flush-interval-ms. A cart that is not in memory yet
+// is loaded with CartItemRepository.findByCustomerWithProductAndCustomer on first use.
+//
+// Durability bound: changes are at most one flush interval old, and once
+// app.cart.write-behind.max-dirty-carts carts are waiting, writers flush synchronously before
+// continuing. Pending changes are also flushed on shutdown; a crash loses at most what is pending.
+//
+// Concurrency: a cart is only touched while holding its lock stripe (customer id hash -> one of
+// app.cart.write-behind.lock-stripes locks), so different carts rarely contend and no lock is
+// ever held during database I/O. ReentrantLock instead of synchronized keeps virtual threads unpinned.
+@Service
+@Primary
+@ConditionalOnProperty(name = "app.cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindCartService implements CartService {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartService.class);
+
+    // Same key as CartItemRepository.upsertQuantity, but sets the absolute quantity held in memory
+    private static final String UPSERT_SQL = "INSERT INTO cart_items (id, customer_id, product_id, quantity) "
+            + "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE quantity = VALUES(quantity), version = version + 1, "
+            + "updated_at = CURRENT_TIMESTAMP";
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE id = ?";
+    // Matches allocationSize of the cart_items_seq generator on CartItem
+    private static final int ID_BLOCK_SIZE = 50;
+    // Product ids per query when refreshing cart lines after a catalog import
+    private static final int PRODUCT_REFRESH_CHUNK = 1000;
+
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final CustomerRepository customerRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxDirtyCarts;
+    private final int maxCarts;
+
+    private final Map<Long, CartState> carts = new ConcurrentHashMap<>(); // By customer id
+    private final Map<Long, Long> customerIdByItemId = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyCustomerIds = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock[] stripes;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock idLock = new ReentrantLock();
+    private long nextId; // Guarded by idLock; ids in [nextId, lastId] are reserved for this instance
+    private long lastId = -1;
+    // Cart ETags: every load or change of a cart takes the next revision. The ETag also carries the
+    // start time of this instance, so revisions handed out before a restart can never match again.
+    private final AtomicLong revisions = new AtomicLong();
+    private final long instanceStartMillis = System.currentTimeMillis();
+
+    // A cart held in memory. Only read or changed while holding the customer's stripe lock.
+    private static final class CartState {
+        final Map<Long, Line> linesByProductId = new LinkedHashMap<>();
+        final Set<Long> deletedItemIds = new HashSet<>(); // Rows to delete on the next flush
+        long revision;
+        Instant lastModified; // Null while the cart has never had a line
+    }
+
+    private static final class Line {
+        final long id;
+        final long productId;
+        String productName;
+        double productPrice;
+        int quantity;
+        boolean dirty; // Must be written on the next flush
+
+        Line(long id, long productId, String productName, double productPrice, int quantity) {
+            this.id = id;
+            this.productId = productId;
+            this.productName = productName;
+            this.productPrice = productPrice;
+            this.quantity = quantity;
+        }
+    }
+
+    // What one flush writes for one customer, kept so it can be re-queued if the write fails
+    private record PendingWrite(long customerId, List<Object[]> upserts, List<Long> deletes) {
+    }
+
+    public WriteBehindCartService(CartItemRepository cartItemRepository,
+                                  ProductRepository productRepository,
+                                  CustomerRepository customerRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${app.cart.write-behind.max-dirty-carts:10000}") int maxDirtyCarts,
+                                  @Value("${app.cart.write-behind.max-carts:100000}") int maxCarts,
+                                  @Value("${app.cart.write-behind.lock-stripes:64}") int lockStripes) {
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.customerRepository = customerRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.maxDirtyCarts = maxDirtyCarts;
+        this.maxCarts = maxCarts;
+        // Round up to a power of two so the stripe is a bit mask of the hash
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, lockStripes - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // ===========================
+    // CART OPERATIONS
+    // ===========================
+
+    @Override
+    public List<CartItemDto> getCartItemsByCustomer(Long customerId) {
+        ReentrantLock lock = lockFor(customerId);
+        CartState cart = lockCart(customerId, lock);
+        try {
+            return cart.linesByProductId.values().stream()
+                    .map(line -> toDto(customerId, line))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Totals straight from the in-memory cart; no query once the cart is loaded
+    @Override
+    public CartSummaryDto getCartSummary(Long customerId) {
+        ReentrantLock lock = lockFor(customerId);
+        CartState cart = lockCart(customerId, lock);
+        try {
+            long totalQuantity = 0;
+            double subtotal = 0;
+            for (Line line : cart.linesByProductId.values()) {
+                totalQuantity += line.quantity;
+                subtotal += line.quantity * line.productPrice;
+            }
+            return new CartSummaryDto(customerId, (long) cart.linesByProductId.size(), totalQuantity, subtotal);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Straight from memory as well; the database copy may lag behind by up to one flush
+    @Override
+    public ResourceVersion getCartVersion(Long customerId) {
+        ReentrantLock lock = lockFor(customerId);
+        CartState cart = lockCart(customerId, lock);
+        try {
+            return new ResourceVersion(instanceStartMillis + "-" + cart.revision, cart.lastModified);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public CartItemDto addOrUpdateCartItem(CartItemDto request) {
+        return addOrUpdateCartItems(request.getCustomerId(), List.of(request)).get(0);
+    }
+
+    @Override
+    public List<CartItemDto> addOrUpdateCartItems(Long customerId, List<CartItemDto> requests) {
+        // Merge repeated products, then look all of them up at once (second-level cache hits when hot)
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItemDto request : requests) {
+            if (request.getProductId() == null) {
+                throw new BadRequestException("Every cart item needs a productId");
+            }
+            quantities.merge(request.getProductId(), request.getQuantity(), Integer::sum);
+        }
+        if (quantities.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Product> products = readTransaction.execute(status ->
+                productRepository.findAllById(quantities.keySet()).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity())));
+        if (products.size() < quantities.size()) {
+            Set<Long> missing = new HashSet<>(quantities.keySet());
+            missing.removeAll(products.keySet());
+            throw new ResourceNotFoundException("Products not found with ids: " + missing);
+        }
+        // Reserve ids before taking the cart lock, in case new lines need them
+        Deque<Long> newIds = allocateIds(quantities.size());
+
+        List<CartItemDto> result = new ArrayList<>(quantities.size());
+        ReentrantLock lock = lockFor(customerId);
+        CartState cart = lockCart(customerId, lock);
+        try {
+            quantities.forEach((productId, quantity) -> {
+                Product product = products.get(productId);
+                Line line = cart.linesByProductId.get(productId);
+                if (line == null) {
+                    line = new Line(newIds.pop(), productId, product.getName(), product.getPrice(), 0);
+                    cart.linesByProductId.put(productId, line);
+                    customerIdByItemId.put(line.id, customerId);
+                }
+                line.quantity += quantity;
+                line.dirty = true;
+                result.add(toDto(customerId, line));
+            });
+            markChanged(cart);
+            dirtyCustomerIds.add(customerId);
+        } finally {
+            lock.unlock();
+        }
+        // Published outside the lock (there is no transaction here, the listeners run right away)
+        quantities.forEach((productId, quantity) -> publishQuantityChange(customerId, productId, 0, quantity));
+        applyBackpressure();
+        return result;
+    }
+
+    @Override
+    public CartItemDto updateCartItemQuantity(Long cartItemId, int newQuantity) {
+        Long customerId = findCustomerIdOfItem(cartItemId);
+        CartItemDto result = null;
+        long productId;
+        int oldQuantity;
+        ReentrantLock lock = lockFor(customerId);
+        CartState cart = lockCart(customerId, lock);
+        try {
+            Line line = findLine(cart, cartItemId);
+            productId = line.productId;
+            oldQuantity = line.quantity;
+            if (newQuantity <= 0) {
+                // If quantity is 0 or less, remove the item
+                removeLine(cart, line);
+            } else {
+                line.quantity = newQuantity;
+                line.dirty = true;
+                result = toDto(customerId, line);
+            }
+            markChanged(cart);
+            dirtyCustomerIds.add(customerId);
+        } finally {
+            lock.unlock();
+        }
+        publishQuantityChange(customerId, productId, oldQuantity, Math.max(newQuantity, 0));
+        applyBackpressure();
+        return result;
+    }
+
+    @Override
+    public void removeCartItem(Long cartItemId) {
+        Long customerId = findCustomerIdOfItem(cartItemId);
+        Line line;
+        ReentrantLock lock = lockFor(customerId);
+        CartState cart = lockCart(customerId, lock);
+        try {
+            line = findLine(cart, cartItemId);
+            removeLine(cart, line);
+            markChanged(cart);
+            dirtyCustomerIds.add(customerId);
+        } finally {
+            lock.unlock();
+        }
+        publishQuantityChange(customerId, line.productId, line.quantity, 0);
+        applyBackpressure();
+    }
+
+    @Override
+    public void clearCart(Long customerId) {
+        ReentrantLock lock = lockFor(customerId);
+        CartState cart = lockCart(customerId, lock);
+        try {
+            for (Line line : List.copyOf(cart.linesByProductId.values())) {
+                removeLine(cart, line);
+            }
+            markChanged(cart);
+            dirtyCustomerIds.add(customerId);
+        } finally {
+            lock.unlock();
+        }
+        eventPublisher.publishEvent(CartActivityEvent.cleared(customerId));
+        applyBackpressure();
+    }
+
+    // Keep product names and prices of in-memory lines current; drop lines of deleted products
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        long productId = event.productId();
+        carts.forEach((customerId, cart) -> {
+            ReentrantLock lock = lockFor(customerId);
+            lock.lock();
+            try {
+                Line line = cart.linesByProductId.get(productId);
+                if (line == null) {
+                    return;
+                }
+                if (event.type() == ProductChangedEvent.Type.DELETED) {
+                    // The product is gone from the database, so there is nothing left to write for this line
+                    cart.linesByProductId.remove(productId);
+                    customerIdByItemId.remove(line.id);
+                } else {
+                    line.productName = event.product().getName();
+                    line.productPrice = event.product().getPrice();
+                }
+                markChanged(cart); // The cart shows product names and prices, so its ETag changes too
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    // CustomerService deletes a customer's cart lines together with the customer; forget the in-memory
+    // cart as well, unflushed changes included (they could only fail on the foreign key now)
+    @TransactionalEventListener
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        if (event.type() != CustomerChangedEvent.Type.DELETED) {
+            return;
+        }
+        Long customerId = event.customerId();
+        ReentrantLock lock = lockFor(customerId);
+        lock.lock();
+        try {
+            CartState cart = carts.remove(customerId);
+            dirtyCustomerIds.remove(customerId);
+            if (cart != null) {
+                cart.linesByProductId.values().forEach(line -> customerIdByItemId.remove(line.id));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // CartExpiryService deleted these carts from cart_items. Forget them here too, unless a cart has
+    // changed in memory since it went idle: the sweeper only saw the database, which may lag behind by
+    // up to one flush. Those carts stay, with every line written again on the next flush.
+    @EventListener
+    public void onCartsExpired(CartsExpiredEvent event) {
+        for (Long customerId : event.customerIds()) {
+            ReentrantLock lock = lockFor(customerId);
+            lock.lock();
+            try {
+                CartState cart = carts.get(customerId);
+                if (cart == null) {
+                    continue;
+                }
+                if (cart.lastModified != null && !cart.lastModified.isBefore(event.idleSince())) {
+                    cart.linesByProductId.values().forEach(line -> line.dirty = true);
+                    dirtyCustomerIds.add(customerId);
+                } else {
+                    carts.remove(customerId);
+                    dirtyCustomerIds.remove(customerId);
+                    cart.linesByProductId.values().forEach(line -> customerIdByItemId.remove(line.id));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // A bulk import changes prices without ProductChangedEvents: re-read the products of all in-memory
+    // lines (in chunks of ids) and update the lines whose snapshot is out of date
+    @Async
+    @EventListener
+    public void onCatalogImported(ProductCatalogImportedEvent event) {
+        Set<Long> productIds = new HashSet<>();
+        carts.forEach((customerId, cart) -> {
+            ReentrantLock lock = lockFor(customerId);
+            lock.lock();
+            try {
+                productIds.addAll(cart.linesByProductId.keySet());
+            } finally {
+                lock.unlock();
+            }
+        });
+        Map<Long, Product> products = new HashMap<>();
+        List<Long> ids = new ArrayList<>(productIds);
+        for (int from = 0; from < ids.size(); from += PRODUCT_REFRESH_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + PRODUCT_REFRESH_CHUNK, ids.size()));
+            readTransaction.executeWithoutResult(status ->
+                    productRepository.findAllById(chunk).forEach(product -> products.put(product.getId(), product)));
+        }
+        carts.forEach((customerId, cart) -> {
+            ReentrantLock lock = lockFor(customerId);
+            lock.lock();
+            try {
+                boolean changed = false;
+                for (Line line : cart.linesByProductId.values()) {
+                    Product product = products.get(line.productId);
+                    if (product != null && (product.getPrice() != line.productPrice
+                            || !product.getName().equals(line.productName))) {
+                        line.productName = product.getName();
+                        line.productPrice = product.getPrice();
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    markChanged(cart);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    // ===========================
+    // FLUSHING
+    // ===========================
+
+    // Write all dirty carts to cart_items: deletes first (a product can be removed and re-added
+    // under a new id), then upserts, each as one JDBC batch in one transaction.
+    // Then trim the carts held in memory, on every tick: carts that were only read are never dirty,
+    // so waiting for something to write would let them pile up past max-carts.
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<PendingWrite> pending = collectDirtyCarts();
+            if (!pending.isEmpty()) {
+                write(pending);
+            }
+            evictCleanCarts();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Flush whatever is still pending before the application context (and its DataSource) goes away
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public int getDirtyCartCount() {
+        return dirtyCustomerIds.size();
+    }
+
+    public int getCartCount() {
+        return carts.size();
+    }
+
+    // Snapshot and reset the dirty state of every dirty cart
+    private List<PendingWrite> collectDirtyCarts() {
+        List<PendingWrite> pending = new ArrayList<>();
+        for (Long customerId : List.copyOf(dirtyCustomerIds)) {
+            CartState cart = carts.get(customerId);
+            ReentrantLock lock = lockFor(customerId);
+            lock.lock();
+            try {
+                dirtyCustomerIds.remove(customerId);
+                if (cart == null) {
+                    continue;
+                }
+                List<Object[]> upserts = new ArrayList<>();
+                for (Line line : cart.linesByProductId.values()) {
+                    if (line.dirty) {
+                        upserts.add(new Object[]{line.id, customerId, line.productId, line.quantity});
+                        line.dirty = false;
+                    }
+                }
+                pending.add(new PendingWrite(customerId, upserts, new ArrayList<>(cart.deletedItemIds)));
+                cart.deletedItemIds.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return pending;
+    }
+
+    private void write(List<PendingWrite> pending) {
+        List<Long> deletes = pending.stream().flatMap(write -> write.deletes().stream()).toList();
+        List<Object[]> upserts = pending.stream().flatMap(write -> write.upserts().stream()).toList();
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(DELETE_SQL, deletes.stream().map(id -> new Object[]{id}).toList());
+                jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+            });
+            log.debug("Flushed {} carts ({} upserts, {} deletes)", pending.size(), upserts.size(), deletes.size());
+        } catch (DataAccessException e) {
+            log.warn("Batched cart flush failed, retrying cart by cart: {}", e.getMessage());
+            pending.forEach(this::flushOne);
+        }
+    }
+
+    // Fallback when a batch fails: write one cart at a time so one bad cart cannot block the rest.
+    // A cart with a row the database rejects for integrity reasons (e.g. the product was deleted
+    // meanwhile) is written again row by row; carts that fail for any other reason are queued again.
+    private void flushOne(PendingWrite write) {
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                write.deletes().forEach(id -> jdbcTemplate.update(DELETE_SQL, id));
+                write.upserts().forEach(row -> jdbcTemplate.update(UPSERT_SQL, row));
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Cart flush for customer {} rejected, retrying row by row: {}", write.customerId(), e.getMessage());
+            flushRowByRow(write);
+        } catch (DataAccessException e) {
+            log.warn("Cart flush for customer {} failed, will retry: {}", write.customerId(), e.getMessage());
+            requeue(write);
+        }
+    }
+
+    // Each row in a transaction of its own: only the rows the database rejects are dropped, the rest of
+    // the cart is written, and rows that fail for any other reason are queued again
+    private void flushRowByRow(PendingWrite write) {
+        List<Long> failedDeletes = new ArrayList<>();
+        List<Object[]> failedUpserts = new ArrayList<>();
+        for (Long id : write.deletes()) {
+            if (!flushRow(write.customerId(), DELETE_SQL, new Object[]{id})) {
+                failedDeletes.add(id);
+            }
+        }
+        for (Object[] row : write.upserts()) {
+            if (!flushRow(write.customerId(), UPSERT_SQL, row)) {
+                failedUpserts.add(row);
+            }
+        }
+        if (!failedDeletes.isEmpty() || !failedUpserts.isEmpty()) {
+            requeue(new PendingWrite(write.customerId(), failedUpserts, failedDeletes));
+        }
+    }
+
+    // False if the row should be retried later; a row the database rejects is dropped and counts as done
+    private boolean flushRow(long customerId, String sql, Object[] row) {
+        try {
+            writeTransaction.executeWithoutResult(status -> jdbcTemplate.update(sql, row));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Dropping unwritable cart row {} of customer {}: {}", row[0], customerId, e.getMessage());
+        } catch (DataAccessException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private void requeue(PendingWrite write) {
+        CartState cart = carts.get(write.customerId());
+        if (cart == null) {
+            return;
+        }
+        ReentrantLock lock = lockFor(write.customerId());
+        lock.lock();
+        try {
+            cart.deletedItemIds.addAll(write.deletes());
+            Set<Long> failedIds = write.upserts().stream().map(row -> (Long) row[0]).collect(Collectors.toSet());
+            cart.linesByProductId.values().stream()
+                    .filter(line -> failedIds.contains(line.id))
+                    .forEach(line -> line.dirty = true);
+            dirtyCustomerIds.add(write.customerId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writers wait for a synchronous flush once too many carts have unflushed changes
+    private void applyBackpressure() {
+        if (dirtyCustomerIds.size() >= maxDirtyCarts) {
+            flush();
+        }
+    }
+
+    // Keep at most maxCarts carts in memory; only clean carts can be dropped (they reload on next use)
+    private void evictCleanCarts() {
+        Iterator<Map.Entry<Long, CartState>> entries = carts.entrySet().iterator();
+        while (carts.size() > maxCarts && entries.hasNext()) {
+            Map.Entry<Long, CartState> entry = entries.next();
+            Long customerId = entry.getKey();
+            ReentrantLock lock = lockFor(customerId);
+            lock.lock();
+            try {
+                if (!dirtyCustomerIds.contains(customerId) && entry.getValue().deletedItemIds.isEmpty()) {
+                    entry.getValue().linesByProductId.values().forEach(line -> customerIdByItemId.remove(line.id));
+                    entries.remove();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ===========================
+    // HELPER METHODS
+    // ===========================
+
+    // Lock the customer's stripe and return their cart, loaded if need be. A cart that was evicted or
+    // forgotten between the lookup and the lock is no longer in the map, and changes made to it would
+    // never be flushed: in that case let go and look again. The caller unlocks.
+    private CartState lockCart(Long customerId, ReentrantLock lock) {
+        while (true) {
+            CartState cart = getOrLoadCart(customerId);
+            lock.lock();
+            if (carts.get(customerId) == cart) {
+                return cart;
+            }
+            lock.unlock();
+        }
+    }
+
+    // Get the customer's cart from memory, loading it from the database on a miss
+    private CartState getOrLoadCart(Long customerId) {
+        CartState cart = carts.get(customerId);
+        if (cart != null) {
+            return cart;
+        }
+        CartState loaded = readTransaction.execute(status -> {
+            Customer customer = customerRepository.findById(customerId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + customerId));
+            CartState state = new CartState();
+            state.revision = revisions.incrementAndGet();
+            for (CartItem item : cartItemRepository.findByCustomerWithProductAndCustomer(customer)) {
+                Product product = item.getProduct();
+                state.linesByProductId.put(product.getId(),
+                        new Line(item.getId(), product.getId(), product.getName(), product.getPrice(), item.getQuantity()));
+                state.lastModified = latest(state.lastModified, latest(item.getUpdatedAt(), product.getUpdatedAt()));
+            }
+            return state;
+        });
+        ReentrantLock lock = lockFor(customerId);
+        lock.lock();
+        try {
+            // Another request may have loaded the same cart meanwhile; the first one wins
+            CartState existing = carts.putIfAbsent(customerId, loaded);
+            if (existing != null) {
+                return existing;
+            }
+            loaded.linesByProductId.values().forEach(line -> customerIdByItemId.put(line.id, customerId));
+            return loaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Long findCustomerIdOfItem(Long cartItemId) {
+        Long customerId = customerIdByItemId.get(cartItemId);
+        if (customerId != null) {
+            return customerId;
+        }
+        // The item's cart is not in memory yet
+        return readTransaction.execute(status -> cartItemRepository.findById(cartItemId)
+                .map(item -> item.getCustomer().getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found with id: " + cartItemId)));
+    }
+
+    private Line findLine(CartState cart, Long cartItemId) {
+        return cart.linesByProductId.values().stream()
+                .filter(line -> line.id == cartItemId)
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found with id: " + cartItemId));
+    }
+
+    // Give a cart that was just changed a new ETag; caller holds the cart's stripe lock
+    private void markChanged(CartState cart) {
+        cart.revision = revisions.incrementAndGet();
+        cart.lastModified = Instant.now();
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        return a == null || (b != null && b.isAfter(a)) ? b : a;
+    }
+
+    private void publishQuantityChange(Long customerId, long productId, int before, int after) {
+        if (after > before) {
+            eventPublisher.publishEvent(CartActivityEvent.added(customerId, productId, after - before));
+        } else if (after < before) {
+            eventPublisher.publishEvent(CartActivityEvent.removed(customerId, productId, before - after, after == 0));
+        }
+    }
+
+    private void removeLine(CartState cart, Line line) {
+        cart.linesByProductId.remove(line.productId);
+        cart.deletedItemIds.add(line.id);
+        customerIdByItemId.remove(line.id);
+    }
+
+    // Reserve count ids from cart_items_seq. Like Hibernate's pooled optimizer (allocationSize 50),
+    // one sequence value v reserves the block [v - 49, v], so ids never collide with Hibernate's.
+    private Deque<Long> allocateIds(int count) {
+        Deque<Long> ids = new ArrayDeque<>(count);
+        idLock.lock();
+        try {
+            while (ids.size() < count) {
+                if (nextId > lastId) {
+                    long blockEnd = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR cart_items_seq", Long.class);
+                    nextId = Math.max(1, blockEnd - ID_BLOCK_SIZE + 1);
+                    lastId = blockEnd;
+                }
+                ids.add(nextId++);
+            }
+        } finally {
+            idLock.unlock();
+        }
+        return ids;
+    }
+
+    private ReentrantLock lockFor(Long customerId) {
+        long hash = customerId * 0x9E3779B97F4A7C15L; // Spread sequential ids over the stripes
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    private CartItemDto toDto(Long customerId, Line line) {
+        return new CartItemDto(line.id, line.productId, line.productName, line.productPrice, customerId, line.quantity);
+    }
+}
@@ -9,6 +9,7 @@ INSERT INTO customers (name, email) VALUES ('Bob Johnson', 'bob@example.com');
 
 -- For cart_items, ensure foreign keys reference the correct tables and existing IDs
 -- Assuming product IDs 1, 2, 3, 4 and customer IDs 1, 2 from above inserts
-INSERT INTO cart_items (product_id, customer_id, quantity) VALUES (1, 1, 1);
-INSERT INTO cart_items (product_id, customer_id, quantity) VALUES (2, 1, 2);
-INSERT INTO cart_items (product_id, customer_id, quantity) VALUES (3, 2, 1);
\ No newline at end of file
+-- Cart item IDs come from the same sequence Hibernate uses (see CartItem)
+INSERT INTO cart_items (id, product_id, customer_id, quantity) VALUES (NEXT VALUE FOR cart_items_seq, 1, 1, 1);
+INSERT INTO cart_items (id, product_id, customer_id, quantity) VALUES (NEXT VALUE FOR cart_items_seq, 2, 1, 2);
+INSERT INTO cart_items (id, product_id, customer_id, quantity) VALUES (NEXT VALUE FOR cart_items_seq, 3, 2, 1);
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.ecommerce.demo;
+
+import com.ecommerce.demo.dto.CartExpiryStatsDto;
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.entity.CartItem;
+import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.repository.CartItemRepository;
+import com.ecommerce.demo.repository.CustomerRepository;
+import com.ecommerce.demo.repository.ProductRepository;
+import com.ecommerce.demo.service.CartExpiryService;
+import com.ecommerce.demo.service.CartItemService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Abandoned-cart expiry. Carts are made to look idle by moving their updated_at back past the TTL;
+// a batch size of 2 makes one sweep take several keyset batches. The schedule is pushed out of the
+// way, so only the explicit sweep() calls run.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cartexpirytests;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "app.cart.expiry.idle-ttl=1h",
+        "app.cart.expiry.batch-size=2",
+        "app.cart.expiry.initial-delay-ms=3600000"
+})
+class CartExpiryServiceTests {
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    private CartExpiryService cartExpiryService;
+    @Autowired
+    private CartItemService cartItemService;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void onlyCartsIdleAsAWholeAreDeleted() {
+        Customer idleA = newCustomer();
+        Customer idleB = newCustomer();
+        Customer idleC = newCustomer();
+        Customer partlyIdle = newCustomer();
+        Customer active = newCustomer();
+        idle(addLine(idleA), addLine(idleA), addLine(idleB), addLine(idleC), addLine(partlyIdle));
+        addLine(partlyIdle);
+        addLine(active);
+
+        long rows = cartExpiryService.sweep();
+
+        assertEquals(4, rows);
+        for (Customer customer : new Customer[]{idleA, idleB, idleC}) {
+            assertEquals(0, cartItemRepository.findByCustomer(customer).size());
+        }
+        // One line is old, but the cart changed recently, so it keeps both
+        assertEquals(2, cartItemRepository.findByCustomer(partlyIdle).size());
+        assertEquals(1, cartItemRepository.findByCustomer(active).size());
+
+        CartExpiryStatsDto stats = cartExpiryService.getStats();
+        assertEquals(3, stats.getLastRunCarts());
+        assertEquals(4, stats.getLastRunRows());
+        assertEquals(2, stats.getLastRunBatches()); // [A, B], [C]
+
+        // Nothing left to do
+        assertEquals(0, cartExpiryService.sweep());
+        assertEquals(4, cartExpiryService.getStats().getTotalRowsDeleted());
+    }
+
+    // A scan range of one customer id: every batch looks at a single cart, yet the walk still reaches
+    // idle carts behind active ones. No rate limit, so it does not sleep between batches.
+    @Test
+    void narrowScanRangesStillReachEveryCart() {
+        Customer idleA = newCustomer();
+        Customer active = newCustomer();
+        Customer idleB = newCustomer();
+        idle(addLine(idleA), addLine(idleB));
+        addLine(active);
+        CartExpiryService oneCartAtATime = new CartExpiryService(namedParameterJdbcTemplate, transactionManager,
+                eventPublisher, Duration.ofHours(1), 2, 1, 0);
+
+        assertEquals(2, oneCartAtATime.sweep());
+
+        assertEquals(0, cartItemRepository.findByCustomer(idleA).size());
+        assertEquals(1, cartItemRepository.findByCustomer(active).size());
+        assertEquals(0, cartItemRepository.findByCustomer(idleB).size());
+        assertEquals(2, oneCartAtATime.getStats().getLastRunBatches());
+    }
+
+    @Test
+    void negativeRateLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CartExpiryService(namedParameterJdbcTemplate,
+                transactionManager, eventPublisher, Duration.ofHours(1), 2, 1, -1));
+    }
+
+    @Test
+    void createdAtStaysWhileUpdatedAtMovesOn() {
+        Customer customer = newCustomer();
+        Product product = newProduct();
+        CartItemDto request = new CartItemDto();
+        request.setCustomerId(customer.getId());
+        request.setProductId(product.getId());
+        request.setQuantity(1);
+        Long itemId = cartItemService.addOrUpdateCartItem(request).getId();
+        idle(itemId);
+        CartItem before = cartItemRepository.findById(itemId).orElseThrow();
+
+        cartItemService.addOrUpdateCartItem(request);
+
+        CartItem after = cartItemRepository.findById(itemId).orElseThrow();
+        assertNotNull(after.getCreatedAt());
+        assertEquals(before.getCreatedAt(), after.getCreatedAt());
+        assertTrue(after.getUpdatedAt().isAfter(before.getUpdatedAt()));
+    }
+
+    // Moves the lines' timestamps back past the idle TTL
+    private void idle(Long... itemIds) {
+        Timestamp twoHoursAgo = Timestamp.from(Instant.now().minus(Duration.ofHours(2)));
+        for (Long id : itemIds) {
+            jdbcTemplate.update("UPDATE cart_items SET created_at = ?, updated_at = ? WHERE id = ?",
+                    twoHoursAgo, twoHoursAgo, id);
+        }
+    }
+
+    private Long addLine(Customer customer) {
+        CartItem item = new CartItem();
+        item.setCustomer(customer);
+        item.setProduct(newProduct());
+        item.setQuantity(1);
+        return cartItemRepository.save(item).getId();
+    }
+
+    private Customer newCustomer() {
+        Customer customer = new Customer();
+        int n = NAMES.incrementAndGet();
+        customer.setName("Expiry Customer " + n);
+        customer.setEmail("expiry" + n + "@example.com");
+        return customerRepository.save(customer);
+    }
+
+    private Product newProduct() {
+        Product product = new Product();
+        product.setName("Expiry Product " + NAMES.incrementAndGet());
+        product.setPrice(3.0);
+        return productRepository.save(product);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ecommerce.demo;
+
+import com.ecommerce.demo.dto.ImportErrorDto;
+import com.ecommerce.demo.dto.ProductImportReportDto;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.exception.BadRequestException;
+import com.ecommerce.demo.repository.ProductRepository;
+import com.ecommerce.demo.service.ProductImportService;
+import com.ecommerce.demo.service.ProductService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Bulk import: CSV and NDJSON parsing, upserts keyed on the product name, chunked commits and
+// per-row error reporting. A chunk size of 2 makes every upload span several chunks.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:importtests;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "app.products.import.chunk-size=2"
+})
+class ProductImportServiceTests {
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+    @Autowired
+    private ProductImportService productImportService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void csvWithQuotedFieldsIsImportedInChunks() {
+        ProductImportReportDto report = importBody(CSV, """
+                description,name,price
+                "Commas, ""quotes"" and
+                a line break",Import Csv Lamp,19.99
+                Plain,Import Csv Desk,120
+                ,Import Csv Chair,35.5
+                """);
+
+        assertEquals("COMPLETED", report.getStatus());
+        assertEquals(3, report.getRowsImported());
+        assertEquals(2, report.getChunksCommitted());
+        Product lamp = productRepository.findByName("Import Csv Lamp").orElseThrow();
+        assertEquals("Commas, \"quotes\" and\na line break", lamp.getDescription());
+        assertEquals(19.99, lamp.getPrice());
+    }
+
+    @Test
+    void existingNamesAreUpdatedInPlace() {
+        importBody(CSV, "name,price,description\nImport Upsert Tablet,300,first\n");
+        Product before = productRepository.findByName("Import Upsert Tablet").orElseThrow();
+
+        importBody(MediaType.APPLICATION_NDJSON,
+                "{\"name\": \"Import Upsert Tablet\", \"price\": 250, \"description\": \"second\"}\n");
+
+        Product after = productRepository.findById(before.getId()).orElseThrow();
+        assertEquals(250, after.getPrice());
+        assertEquals("second", after.getDescription());
+        assertEquals(before.getVersion() + 1, after.getVersion()); // So its ETag changes
+    }
+
+    @Test
+    void onlyImportedProductsAreEvictedFromTheCache() {
+        importBody(CSV, "name,price\nImport Cached Updated,10\nImport Cached Untouched,20\n");
+        Long updated = productRepository.findByName("Import Cached Updated").orElseThrow().getId();
+        Long untouched = productRepository.findByName("Import Cached Untouched").orElseThrow().getId();
+        productService.getProductById(updated);
+        productService.getProductById(untouched);
+        assertTrue(entityManagerFactory.getCache().contains(Product.class, updated));
+
+        importBody(CSV, "name,price\nImport Cached Updated,12\n");
+
+        assertFalse(entityManagerFactory.getCache().contains(Product.class, updated));
+        assertTrue(entityManagerFactory.getCache().contains(Product.class, untouched));
+        assertEquals(12, productService.getProductById(updated).getPrice());
+    }
+
+    // Another product was last written by Hibernate with a JVM clock ahead of the database's, so the
+    // import's CURRENT_TIMESTAMP is not the newest updated_at: the catalog ETag must change anyway
+    @Test
+    void anImportChangesTheCatalogVersionWhateverTheClocks() {
+        importBody(CSV, "name,price\nImport Clock Ahead,10\nImport Clock Behind,20\n");
+        jdbcTemplate.update("UPDATE products SET updated_at = DATEADD('HOUR', 1, CURRENT_TIMESTAMP) WHERE name = ?",
+                "Import Clock Ahead");
+        String before = productService.getCatalogVersion().etag();
+
+        importBody(CSV, "name,price\nImport Clock Behind,25\n");
+
+        assertNotEquals(before, productService.getCatalogVersion().etag());
+    }
+
+    @Test
+    void invalidRowsAreReportedWithTheirLine() {
+        ProductImportReportDto report = importBody(MediaType.APPLICATION_NDJSON, """
+                {"name": "Import Ndjson Good", "price": 5}
+                {"name": "Import Ndjson Bad"
+
+                {"name": "Import Ndjson Free", "price": "gratis"}
+                {"price": 3}
+                {"name": "Import Ndjson Negative", "price": -1}
+                """);
+
+        assertEquals("COMPLETED", report.getStatus());
+        assertEquals(5, report.getRowsRead());
+        assertEquals(1, report.getRowsImported());
+        assertEquals(4, report.getRowsFailed());
+        assertEquals(List.of(2L, 4L, 5L, 6L), report.getErrors().stream().map(ImportErrorDto::getLine).toList());
+    }
+
+    @Test
+    void csvWithoutRequiredColumnsIsRejected() {
+        assertThrows(BadRequestException.class, () -> importBody(CSV, "title,cost\nLamp,3\n"));
+    }
+
+    private ProductImportReportDto importBody(MediaType contentType, String body) {
+        return productImportService.importProducts(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), contentType);
+    }
+}
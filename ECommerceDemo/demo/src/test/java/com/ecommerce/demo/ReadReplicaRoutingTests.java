@@ -0,0 +1,232 @@
+package com.ecommerce.demo;
+
+import com.ecommerce.demo.controller.ProductController;
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.entity.CartItem;
+import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.repository.CartItemRepository;
+import com.ecommerce.demo.repository.CustomerRepository;
+import com.ecommerce.demo.repository.ProductRepository;
+import com.ecommerce.demo.service.CartItemService;
+import com.ecommerce.demo.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Read/write routing end to end, with two more in-memory H2 databases as the read replicas.
+// There is no replication between them: replicate() copies the primary over, so a replica is
+// exactly as stale as the last copy and it is easy to tell which database answered.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routingprimary;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "app.db.read-replicas.enabled=true",
+        "app.db.read-replicas.urls=" + ReadReplicaRoutingTests.REPLICA_1 + "," + ReadReplicaRoutingTests.REPLICA_2,
+        "app.db.read-replicas.sticky-window-ms=60000"
+})
+class ReadReplicaRoutingTests {
+    static final String REPLICA_1 = "jdbc:h2:mem:routingreplica1;DB_CLOSE_DELAY=-1;MODE=MySQL";
+    static final String REPLICA_2 = "jdbc:h2:mem:routingreplica2;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CartItemService cartItemService;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductController productController;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // The replicas need the schema before the startup loaders run their read-only queries
+    @TestConfiguration
+    static class Replication {
+        @EventListener(ContextRefreshedEvent.class)
+        void replicateOnStartup(ContextRefreshedEvent event) throws Exception {
+            replicate(event.getApplicationContext().getBean(JdbcTemplate.class));
+        }
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplicas() {
+        Set<String> readers = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(readOnly().execute(status -> currentDatabase()));
+        }
+
+        assertEquals(Set.of("ROUTINGREPLICA1", "ROUTINGREPLICA2"), readers);
+        assertEquals("ROUTINGPRIMARY", new TransactionTemplate(transactionManager).execute(status -> currentDatabase()));
+    }
+
+    @Test
+    void cartReadsStickToThePrimaryAfterTheCustomerChangesTheCart() throws Exception {
+        Customer writer = newCustomer("writer");
+        Customer other = newCustomer("other");
+        Product product = newProduct();
+        replicate(jdbcTemplate);
+
+        // Both carts change on the primary only, but only the first through the cart service
+        CartItemDto request = new CartItemDto();
+        request.setCustomerId(writer.getId());
+        request.setProductId(product.getId());
+        request.setQuantity(2);
+        cartItemService.addOrUpdateCartItem(request);
+        CartItem line = new CartItem();
+        line.setCustomer(other);
+        line.setProduct(product);
+        line.setQuantity(1);
+        cartItemRepository.save(line);
+
+        // Read back from the primary...
+        assertEquals(1, cartItemService.getCartItemsByCustomer(writer.getId()).size());
+        // ...while carts nobody just changed through the service are still read from a (stale) replica
+        assertEquals(0, cartItemService.getCartItemsByCustomer(other.getId()).size());
+    }
+
+    // What open-in-view does: one EntityManager across several transactions of a request
+    @Test
+    void writeAfterAReadOnlyTransactionInTheSameEntityManagerGoesToThePrimary() {
+        TransactionSynchronizationManager.bindResource(entityManagerFactory,
+                new EntityManagerHolder(entityManagerFactory.createEntityManager()));
+        Product product;
+        try {
+            readOnly().execute(status -> productRepository.count());
+            product = newProduct();
+        } finally {
+            ((EntityManagerHolder) TransactionSynchronizationManager.unbindResource(entityManagerFactory))
+                    .getEntityManager().close();
+        }
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM products WHERE id = ?", Integer.class, product.getId()));
+    }
+
+    // Replica data must not reach the second-level cache, which the primary's transactions trust as well
+    @Test
+    void onlyReadWriteTransactionsFillTheSecondLevelCache() throws Exception {
+        Product product = newProduct();
+        replicate(jdbcTemplate);
+        Cache cache = entityManagerFactory.getCache();
+        cache.evictAll();
+
+        productService.getProductById(product.getId());
+        assertFalse(cache.contains(Product.class, product.getId()));
+
+        new TransactionTemplate(transactionManager).execute(status -> productService.getProductById(product.getId()));
+        assertTrue(cache.contains(Product.class, product.getId()));
+    }
+
+    // Only the first replica has caught up with a catalog change. Whichever replica answers the version,
+    // a response (and the JSON cache entry behind it) carrying the new ETag must carry the new prices.
+    @Test
+    void productPagesAreNeverOlderThanTheirETag() throws Exception {
+        newProduct();
+        replicate(jdbcTemplate);
+        jdbcTemplate.update("UPDATE products SET price = price + 1, version = version + 1, updated_at = CURRENT_TIMESTAMP");
+        replicate(jdbcTemplate, REPLICA_1);
+        TransactionTemplate primary = new TransactionTemplate(transactionManager);
+        String currentETag = primary.execute(status -> productService.getCatalogVersion().etag());
+        String currentPage = objectMapper.writeValueAsString(
+                primary.execute(status -> productService.getProductsPage(null, null, "id")));
+
+        int current = 0;
+        for (int i = 0; i < 6; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            byte[] body = (byte[]) productController.getProducts(null, null, "id", null, null, null,
+                    new ServletWebRequest(new MockHttpServletRequest("GET", "/products"), response)).getBody();
+            if (response.getHeader(HttpHeaders.ETAG).contains(currentETag)) {
+                current++;
+                assertEquals(currentPage, new String(body, StandardCharsets.UTF_8));
+            }
+            if (i % 2 == 0) {
+                readOnly().execute(status -> currentDatabase()); // Moves the round-robin on by one
+            }
+        }
+        assertTrue(current > 0);
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("SELECT DATABASE()", String.class);
+    }
+
+    private Customer newCustomer(String name) {
+        Customer customer = new Customer();
+        customer.setName("Routing " + name);
+        customer.setEmail("routing-" + name + "@example.com");
+        return customerRepository.save(customer);
+    }
+
+    private Product newProduct() {
+        Product product = new Product();
+        product.setName("Routing Product " + System.nanoTime());
+        product.setPrice(9.5);
+        return productRepository.save(product);
+    }
+
+    // Outside a transaction the JdbcTemplate talks to the primary
+    private static void replicate(JdbcTemplate primary) throws IOException, SQLException {
+        replicate(primary, REPLICA_1, REPLICA_2);
+    }
+
+    private static void replicate(JdbcTemplate primary, String... replicas) throws IOException, SQLException {
+        Path script = Files.createTempFile("routing-replica", ".sql");
+        try {
+            primary.execute("SCRIPT TO '" + script + "'");
+            for (String replica : replicas) {
+                try (Connection connection = DriverManager.getConnection(replica, "sa", "");
+                     Statement statement = connection.createStatement()) {
+                    statement.execute("DROP ALL OBJECTS");
+                    statement.execute("RUNSCRIPT FROM '" + script + "'");
+                }
+            }
+        } finally {
+            Files.delete(script);
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.ecommerce.demo;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.dto.CursorPage;
+import com.ecommerce.demo.dto.CustomerDto;
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.entity.CartItem;
+import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.exception.DuplicateResourceException;
+import com.ecommerce.demo.exception.ResourceNotFoundException;
+import com.ecommerce.demo.repository.CartItemRepository;
+import com.ecommerce.demo.repository.CustomerRepository;
+import com.ecommerce.demo.repository.ProductRepository;
+import com.ecommerce.demo.service.CartItemService;
+import com.ecommerce.demo.service.CustomerService;
+import com.ecommerce.demo.service.ProductService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.ecommerce.demo.metrics.QueryBudget.assertStatements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// SQL statement budgets for every CartItemService, ProductService and CustomerService method.
+// A change that brings back N+1 loading (a mapper touching a lazy association, a delete that loads
+// rows first, ...) changes these numbers and fails the build. Cart budgets are checked for several
+// cart sizes, because N+1 only shows once there is more than one row.
+// Each test builds its own rows and starts with an empty second-level cache ("cold"); the "warm"
+// variants run the call once first so entity lookups are cache hits.
+// Cart lines of deleted products/customers go 10 per statement here, so the chunking shows as well.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querybudgettests;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "app.cart.delete-chunk-size=10"
+})
+class ServiceQueryBudgetTests {
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    private CartItemService cartItemService;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private CustomerService customerService;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void clearSecondLevelCache() {
+        evictSecondLevelCache();
+    }
+
+    // ===========================
+    // CartItemService
+    // ===========================
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10})
+    void getCartItemsByCustomer(int lines) {
+        Customer customer = cartWithLines(lines);
+        // Customer lookup + one JOIN FETCH query, however many lines
+        List<CartItemDto> items = assertStatements(2, () -> cartItemService.getCartItemsByCustomer(customer.getId()));
+        assertEquals(lines, items.size());
+        // Warm: the customer comes from the second-level cache
+        assertStatements(1, () -> cartItemService.getCartItemsByCustomer(customer.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10})
+    void getCartSummary(int lines) {
+        Customer customer = cartWithLines(lines);
+        assertStatements(2, () -> cartItemService.getCartSummary(customer.getId()));
+        assertStatements(1, () -> cartItemService.getCartSummary(customer.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10})
+    void getCartVersion(int lines) {
+        Customer customer = cartWithLines(lines);
+        // Customer lookup + one aggregate query; warm, only the aggregate
+        assertStatements(2, () -> cartItemService.getCartVersion(customer.getId()));
+        assertStatements(1, () -> cartItemService.getCartVersion(customer.getId()));
+    }
+
+    @Test
+    void addOrUpdateCartItem() {
+        Customer customer = newCustomer();
+        Product product = newProduct();
+        evictSecondLevelCache();
+        // Customer + product lookups, the upsert, the read-back of the line
+        assertStatements(4, () -> cartItemService.addOrUpdateCartItem(cartRequest(customer, product, 1)));
+        assertStatements(2, () -> cartItemService.addOrUpdateCartItem(cartRequest(customer, product, 1)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 20})
+    void addOrUpdateCartItems(int products) {
+        Customer customer = newCustomer();
+        List<CartItemDto> requests = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            Product product = newProduct();
+            if (i % 2 == 0) {
+                addLine(customer, product, 1); // Half the products are already in the cart
+            }
+            requests.add(cartRequest(customer, product, 1));
+        }
+        evictSecondLevelCache();
+        // Customer, all products, one upsert batch, the read-back of the lines
+        List<CartItemDto> items = assertStatements(4,
+                () -> cartItemService.addOrUpdateCartItems(customer.getId(), requests));
+        assertEquals(products, items.size());
+        for (int i = 0; i < products; i++) {
+            assertEquals(requests.get(i).getProductId(), items.get(i).getProductId());
+            assertEquals(i % 2 == 0 ? 2 : 1, items.get(i).getQuantity()); // Added to the existing lines
+        }
+    }
+
+    @Test
+    void updateCartItemQuantity() {
+        Customer customer = newCustomer();
+        CartItem item = addLine(customer, newProduct(), 1);
+        evictSecondLevelCache();
+        // Cart item, UPDATE, and the lazy product for the response
+        assertStatements(3, () -> cartItemService.updateCartItemQuantity(item.getId(), 5));
+        // Quantity 0 removes the line: cart item + DELETE
+        assertStatements(2, () -> cartItemService.updateCartItemQuantity(item.getId(), 0));
+    }
+
+    @Test
+    void removeCartItem() {
+        CartItem item = addLine(newCustomer(), newProduct(), 1);
+        // Load, DELETE
+        assertStatements(2, () -> cartItemService.removeCartItem(item.getId()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10})
+    void clearCart(int lines) {
+        Customer customer = cartWithLines(lines);
+        evictSecondLevelCache();
+        // One bulk DELETE, however many lines
+        assertStatements(1, () -> cartItemService.clearCart(customer.getId()));
+        assertEquals(0, cartItemRepository.findByCustomer(customer).size());
+    }
+
+    @Test
+    void clearEmptyCart() {
+        Customer customer = newCustomer();
+        evictSecondLevelCache();
+        // DELETE finds nothing, so the customer is looked up to tell an empty cart from an unknown customer
+        assertStatements(2, () -> cartItemService.clearCart(customer.getId()));
+    }
+
+    // ===========================
+    // ProductService
+    // ===========================
+
+    @Test
+    void getAllProducts() {
+        newProduct();
+        newProduct();
+        assertStatements(1, () -> productService.getAllProducts());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"id", "price", "name"})
+    void getProductsPage(String sort) {
+        IntStream.range(0, 3).forEach(i -> newProduct());
+        CursorPage<ProductDto> first = assertStatements(1, () -> productService.getProductsPage(null, 2, sort));
+        assertStatements(1, () -> productService.getProductsPage(first.getNextCursor(), 2, sort));
+    }
+
+    @Test
+    void forEachProduct() {
+        newProduct();
+        Product product = newProduct();
+        evictSecondLevelCache();
+        assertStatements(1, () -> productService.forEachProduct(each -> { }));
+        // A full-catalog scan must not push the hot products out of the second-level cache
+        assertFalse(entityManagerFactory.getCache().contains(Product.class, product.getId()));
+    }
+
+    @Test
+    void getProductById() {
+        Product product = newProduct();
+        evictSecondLevelCache();
+        assertStatements(1, () -> productService.getProductById(product.getId()));
+        assertStatements(0, () -> productService.getProductById(product.getId()));
+    }
+
+    @Test
+    void getProductVersion() {
+        Product product = newProduct();
+        evictSecondLevelCache();
+        assertStatements(1, () -> productService.getProductVersion(product.getId()));
+        assertStatements(0, () -> productService.getProductVersion(product.getId()));
+    }
+
+    @Test
+    void getCatalogVersion() {
+        newProduct();
+        assertStatements(1, () -> productService.getCatalogVersion());
+    }
+
+    @Test
+    void getProductsByIds() {
+        List<Long> ids = IntStream.range(0, 5).mapToObj(i -> newProduct().getId()).toList();
+        assertStatements(1, () -> productService.getProductsByIds(ids));
+    }
+
+    @Test
+    void createProduct() {
+        assertStatements(1, () -> productService.createProduct(productRequest()));
+    }
+
+    @Test
+    void updateProduct() {
+        Product product = newProduct();
+        evictSecondLevelCache();
+        assertStatements(2, () -> productService.updateProduct(product.getId(), productRequest()));
+        assertStatements(1, () -> productService.updateProduct(product.getId(), productRequest()));
+    }
+
+    @Test
+    void createProductWithTakenName() {
+        ProductDto request = productRequest();
+        request.setName(newProduct().getName());
+        // The unique index rejects the INSERT, and that is a 409, not a 500
+        assertStatements(1, () -> assertThrows(DuplicateResourceException.class,
+                () -> productService.createProduct(request)));
+    }
+
+    @Test
+    void updateProductToTakenName() {
+        Product product = newProduct();
+        ProductDto request = productRequest();
+        request.setName(newProduct().getName());
+        evictSecondLevelCache();
+        // Product lookup + the UPDATE the unique index rejects
+        assertStatements(2, () -> assertThrows(DuplicateResourceException.class,
+                () -> productService.updateProduct(product.getId(), request)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, 2", "5, 2", "25, 4"})
+    void deleteProduct(int carts, int statements) {
+        Product product = newProduct();
+        for (int i = 0; i < carts; i++) {
+            addLine(newCustomer(), product, 1);
+        }
+        evictSecondLevelCache();
+        // One DELETE per 10 cart lines (until one deletes fewer), then the product's DELETE; nothing is loaded
+        assertStatements(statements, () -> productService.deleteProduct(product.getId()));
+        assertEquals(0, cartItemRepository.findByProduct(product).size());
+        assertFalse(productRepository.existsById(product.getId()));
+    }
+
+    @Test
+    void deleteUnknownProduct() {
+        // The empty chunk and the DELETE that finds nothing, rolled back together
+        assertStatements(2, () -> assertThrows(ResourceNotFoundException.class,
+                () -> productService.deleteProduct(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void deleteProductEvictsOnlyThatProduct() {
+        Product deleted = newProduct();
+        Product kept = newProduct();
+        productService.getProductById(deleted.getId());
+        productService.getProductById(kept.getId());
+
+        productService.deleteProduct(deleted.getId());
+
+        assertFalse(entityManagerFactory.getCache().contains(Product.class, deleted.getId()));
+        assertTrue(entityManagerFactory.getCache().contains(Product.class, kept.getId()));
+    }
+
+    // ===========================
+    // CustomerService
+    // ===========================
+
+    @Test
+    void getAllCustomers() {
+        newCustomer();
+        newCustomer();
+        assertStatements(1, () -> customerService.getAllCustomers());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"id", "name"})
+    void getCustomersPage(String sort) {
+        IntStream.range(0, 3).forEach(i -> newCustomer());
+        CursorPage<CustomerDto> first = assertStatements(1, () -> customerService.getCustomersPage(null, 2, sort));
+        assertStatements(1, () -> customerService.getCustomersPage(first.getNextCursor(), 2, sort));
+    }
+
+    @Test
+    void getCustomerById() {
+        Customer customer = newCustomer();
+        evictSecondLevelCache();
+        assertStatements(1, () -> customerService.getCustomerById(customer.getId()));
+        assertStatements(0, () -> customerService.getCustomerById(customer.getId()));
+    }
+
+    @Test
+    void createCustomer() {
+        // A new email is cleared by the Bloom filter, so only the INSERT runs
+        assertStatements(1, () -> customerService.createCustomer(customerRequest()));
+    }
+
+    @Test
+    void createCustomerWithTakenEmail() {
+        CustomerDto request = customerRequest();
+        customerService.createCustomer(request);
+        // The filter says "maybe", the index lookup says taken, nothing is inserted
+        assertStatements(1, () -> assertThrows(DuplicateResourceException.class,
+                () -> customerService.createCustomer(request)));
+    }
+
+    @Test
+    void createCustomerRacingAnotherSignup() {
+        // Saved behind the filter's back, like a concurrent signup that committed after our check
+        Customer existing = newCustomer();
+        CustomerDto request = customerRequest();
+        request.setEmail(existing.getEmail());
+        // The filter says "new", so the unique index is what rejects the INSERT
+        assertStatements(1, () -> assertThrows(DuplicateResourceException.class,
+                () -> customerService.createCustomer(request)));
+    }
+
+    @Test
+    void updateCustomer() {
+        Customer customer = newCustomer();
+        evictSecondLevelCache();
+        assertStatements(2, () -> customerService.updateCustomer(customer.getId(), customerRequest()));
+        assertStatements(1, () -> customerService.updateCustomer(customer.getId(), customerRequest()));
+    }
+
+    @Test
+    void updateCustomerToTakenEmail() {
+        CustomerDto taken = customerService.createCustomer(customerRequest());
+        Customer customer = newCustomer();
+        CustomerDto request = customerRequest();
+        request.setEmail(taken.getEmail());
+        // Customer lookup + the index lookup that finds the other customer
+        assertStatements(2, () -> assertThrows(DuplicateResourceException.class,
+                () -> customerService.updateCustomer(customer.getId(), request)));
+        // Keeping your own email is not a conflict, and needs no check
+        request.setEmail(customer.getEmail());
+        assertStatements(1, () -> customerService.updateCustomer(customer.getId(), request));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, 2", "5, 2", "10, 3"})
+    void deleteCustomer(int lines, int statements) {
+        Customer customer = cartWithLines(lines);
+        evictSecondLevelCache();
+        // DELETEs for the cart (a full chunk of 10 needs a second one to see it was the last), then the customer's DELETE
+        assertStatements(statements, () -> customerService.deleteCustomer(customer.getId()));
+        assertFalse(customerRepository.existsById(customer.getId()));
+    }
+
+    @Test
+    void deleteUnknownCustomer() {
+        assertStatements(2, () -> assertThrows(ResourceNotFoundException.class,
+                () -> customerService.deleteCustomer(Long.MAX_VALUE)));
+    }
+
+    // ===========================
+    // FIXTURES
+    // ===========================
+
+    private void evictSecondLevelCache() {
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    private Customer newCustomer() {
+        Customer customer = new Customer();
+        int n = NAMES.incrementAndGet();
+        customer.setName("Budget Customer " + n);
+        customer.setEmail("budget" + n + "@example.com");
+        return customerRepository.save(customer);
+    }
+
+    private Product newProduct() {
+        Product product = new Product();
+        int n = NAMES.incrementAndGet();
+        product.setName("Budget Product " + n);
+        product.setPrice(10.0 + n);
+        product.setDescription("Query budget fixture");
+        return productRepository.save(product);
+    }
+
+    private CartItem addLine(Customer customer, Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setCustomer(customer);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return cartItemRepository.save(item);
+    }
+
+    private Customer cartWithLines(int lines) {
+        Customer customer = newCustomer();
+        for (int i = 0; i < lines; i++) {
+            addLine(customer, newProduct(), i + 1);
+        }
+        return customer;
+    }
+
+    private static CartItemDto cartRequest(Customer customer, Product product, int quantity) {
+        CartItemDto request = new CartItemDto();
+        request.setCustomerId(customer.getId());
+        request.setProductId(product.getId());
+        request.setQuantity(quantity);
+        return request;
+    }
+
+    private static ProductDto productRequest() {
+        ProductDto request = new ProductDto();
+        int n = NAMES.incrementAndGet();
+        request.setName("Budget Product " + n);
+        request.setPrice(10.0 + n);
+        request.setDescription("Created by a query budget test");
+        return request;
+    }
+
+    private static CustomerDto customerRequest() {
+        CustomerDto request = new CustomerDto();
+        int n = NAMES.incrementAndGet();
+        request.setName("Budget Customer " + n);
+        request.setEmail("budget" + n + "@example.com");
+        return request;
+    }
+}
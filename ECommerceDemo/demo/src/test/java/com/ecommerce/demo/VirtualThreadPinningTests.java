@@ -0,0 +1,107 @@
+package com.ecommerce.demo;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.service.CartService;
+import com.ecommerce.demo.service.ProductPriceFilterService;
+import com.ecommerce.demo.service.ProductSearchService;
+import com.ecommerce.demo.service.ProductService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the service hot paths on many virtual threads at once while JFR records
+// jdk.VirtualThreadPinned, and fails if any pinned stack passes through application code
+// (e.g. a synchronized block in a service blocking on JDBC or a lock).
+@SpringBootTest(properties = {
+        "spring.threads.virtual.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:pinningtests;DB_CLOSE_DELAY=-1;MODE=MySQL"
+})
+class VirtualThreadPinningTests {
+    private static final int TASKS = 500;
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductSearchService productSearchService;
+    @Autowired
+    private ProductPriceFilterService productPriceFilterService;
+    @Autowired
+    private CartService cartService;
+
+    @Test
+    void hotPathsDoNotPinCarrierThreads() throws Exception {
+        Path recordingFile = Files.createTempFile("virtual-thread-pinning", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            // More tasks than connections, so threads really wait on the bulkhead and the pool
+            List<Future<?>> tasks = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < TASKS; i++) {
+                    long customerId = i % 2 + 1;
+                    long productId = i % 4 + 1;
+                    tasks.add(executor.submit(() -> exerciseHotPaths(customerId, productId)));
+                }
+            }
+            // A task that failed early never got to the code that could pin, so failures fail the test
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<String> pinnedInApplicationCode = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> event.getStackTrace() != null)
+                .filter(event -> event.getStackTrace().getFrames().stream().anyMatch(this::isApplicationFrame))
+                .map(this::describe)
+                .toList();
+        Files.deleteIfExists(recordingFile);
+        assertTrue(pinnedInApplicationCode.isEmpty(),
+                () -> "Virtual threads were pinned in application code:\n" + String.join("\n\n", pinnedInApplicationCode));
+    }
+
+    private void exerciseHotPaths(long customerId, long productId) {
+        productService.getProductById(productId);
+        productService.getProductsPage(null, 20, "price");
+        productSearchService.search("laptop", 10);
+        productPriceFilterService.getProductsByPrice(100.0, 800.0, null, 20, 10);
+
+        CartItemDto request = new CartItemDto();
+        request.setCustomerId(customerId);
+        request.setProductId(productId);
+        request.setQuantity(1);
+        cartService.addOrUpdateCartItem(request);
+        cartService.getCartItemsByCustomer(customerId);
+        cartService.getCartSummary(customerId);
+    }
+
+    // Frames of the application itself, not of this test driving it
+    private boolean isApplicationFrame(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return type.startsWith("com.ecommerce.demo.") && !type.startsWith(VirtualThreadPinningTests.class.getName());
+    }
+
+    private String describe(RecordedEvent event) {
+        return event.getStackTrace().getFrames().stream()
+                .map(frame -> "  at " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.ecommerce.demo;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.repository.CartItemRepository;
+import com.ecommerce.demo.repository.CustomerRepository;
+import com.ecommerce.demo.repository.ProductRepository;
+import com.ecommerce.demo.service.WriteBehindCartService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Write-behind carts with the scheduled flush pushed out of the way, so only the explicit flush() calls write.
+// At most 3 carts stay in memory after a flush.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehindtests;DB_CLOSE_DELAY=-1;MODE=MySQL",
+        "app.cart.write-behind.enabled=true",
+        "app.cart.write-behind.flush-interval-ms=3600000",
+        "app.cart.write-behind.max-carts=3"
+})
+class WriteBehindCartServiceTests {
+    @Autowired
+    private WriteBehindCartService cartService;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void aRejectedRowOnlyDropsThatRow() {
+        Customer customer = new Customer();
+        customer.setName("Write Behind Customer");
+        customer.setEmail("writebehind@example.com");
+        customer = customerRepository.save(customer);
+        Product kept = newProduct("Write Behind Kept");
+        Product deleted = newProduct("Write Behind Deleted");
+        cartService.addOrUpdateCartItems(customer.getId(), List.of(
+                line(customer, kept, 2), line(customer, deleted, 1)));
+
+        // Gone behind the service's back, so the flush hits the foreign key for this line
+        jdbcTemplate.update("DELETE FROM products WHERE id = ?", deleted.getId());
+        cartService.flush();
+
+        assertEquals(List.of(kept.getId()), cartItemRepository.findByCustomer(customer).stream()
+                .map(item -> item.getProduct().getId())
+                .toList());
+        assertEquals(0, cartService.getDirtyCartCount());
+    }
+
+    // Nothing is dirty, so there is nothing to write, but the carts loaded by the reads still go
+    @Test
+    void cartsLoadedByReadsAloneAreEvicted() {
+        cartService.flush(); // Writes whatever another test left dirty
+        for (int i = 0; i < 5; i++) {
+            Customer customer = new Customer();
+            customer.setName("Write Behind Reader " + i);
+            customer.setEmail("writebehind.reader" + i + "@example.com");
+            cartService.getCartItemsByCustomer(customerRepository.save(customer).getId());
+        }
+
+        cartService.flush();
+
+        assertEquals(0, cartService.getDirtyCartCount());
+        assertEquals(3, cartService.getCartCount());
+    }
+
+    private Product newProduct(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(4.0);
+        return productRepository.save(product);
+    }
+
+    private static CartItemDto line(Customer customer, Product product, int quantity) {
+        CartItemDto request = new CartItemDto();
+        request.setCustomerId(customer.getId());
+        request.setProductId(product.getId());
+        request.setQuantity(quantity);
+        return request;
+    }
+}
@@ -0,0 +1,133 @@
+package com.ecommerce.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Routing without Spring around it: every database is a separate in-memory H2 instance, and
+// SELECT DATABASE() tells which one a connection went to. Read-only transactions are simulated
+// by setting the flag JpaTransactionManager would set.
+class ReadWriteRoutingDataSourceTests {
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @AfterEach
+    void closePools() {
+        pools.forEach(HikariDataSource::close);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void readOnlyTransactionsAreSpreadRoundRobin() throws SQLException {
+        ReadWriteRoutingDataSource routing = routing(ReadWriteRoutingDataSource.Balancing.ROUND_ROBIN,
+                "rrreplica1", "rrreplica2");
+
+        assertEquals("RRPRIMARY", databaseOf(routing));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        List<String> reads = List.of(databaseOf(routing), databaseOf(routing), databaseOf(routing), databaseOf(routing));
+
+        assertEquals(List.of("RRREPLICA1", "RRREPLICA2", "RRREPLICA1", "RRREPLICA2"), reads);
+        assertEquals(4, routing.getReplicaReads());
+    }
+
+    @Test
+    void leastConnectionsPrefersTheIdleReplica() throws SQLException {
+        ReadWriteRoutingDataSource routing = routing(ReadWriteRoutingDataSource.Balancing.LEAST_CONNECTIONS,
+                "lcreplica1", "lcreplica2");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        try (Connection busy = routing.getConnection()) {
+            String busyReplica = databaseOf(busy);
+            for (int i = 0; i < 3; i++) {
+                // Every other read would go back to the busy replica with round-robin
+                assertEquals(busyReplica.equals("LCREPLICA1") ? "LCREPLICA2" : "LCREPLICA1", databaseOf(routing));
+            }
+        }
+    }
+
+    @Test
+    void failedReplicaIsSkippedAndReadsFallBackToThePrimary() throws SQLException {
+        // IFEXISTS: connecting fails instead of creating an empty database
+        ReadWriteRoutingDataSource routing = routing(ReadWriteRoutingDataSource.Balancing.ROUND_ROBIN,
+                "fbreplica1;IFEXISTS=TRUE", "fbreplica2");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("FBREPLICA2", databaseOf(routing));
+        }
+        // Tried once, then left alone for retry-after-failure
+        assertEquals(1, routing.getReplicaFailures());
+
+        ReadWriteRoutingDataSource allDown = routing(ReadWriteRoutingDataSource.Balancing.ROUND_ROBIN,
+                "fbreplica3;IFEXISTS=TRUE");
+        assertEquals("RRPRIMARY", databaseOf(allDown));
+        assertEquals(1, allDown.getPrimaryReads());
+    }
+
+    @Test
+    void primaryCanBeForcedForATransaction() throws SQLException {
+        ReadWriteRoutingDataSource routing = routing(ReadWriteRoutingDataSource.Balancing.ROUND_ROBIN, "pfreplica1");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            ReadWriteRoutingDataSource.usePrimaryForCurrentTransaction();
+            assertEquals("RRPRIMARY", databaseOf(routing));
+
+            // The transaction completes: the next one reads from the replica again
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(0));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals("PFREPLICA1", databaseOf(routing));
+    }
+
+    @Test
+    void closingShutsDownTheReplicaPools() throws SQLException {
+        ReadWriteRoutingDataSource routing = routing(ReadWriteRoutingDataSource.Balancing.ROUND_ROBIN, "clreplica1");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals("CLREPLICA1", databaseOf(routing));
+
+        routing.close();
+
+        assertTrue(pools.get(0).isClosed());
+    }
+
+    private ReadWriteRoutingDataSource routing(ReadWriteRoutingDataSource.Balancing balancing, String... replicaNames) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String name : replicaNames) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+            pool.setConnectionTimeout(250);
+            pool.setInitializationFailTimeout(-1);
+            pools.add(pool);
+            replicas.add(pool);
+        }
+        JdbcDataSource primary = new JdbcDataSource();
+        primary.setURL("jdbc:h2:mem:rrprimary;DB_CLOSE_DELAY=-1");
+        return new ReadWriteRoutingDataSource(primary, replicas, List.of(replicaNames), balancing, 60_000);
+    }
+
+    private static String databaseOf(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return databaseOf(connection);
+        }
+    }
+
+    private static String databaseOf(Connection connection) throws SQLException {
+        try (ResultSet result = connection.createStatement().executeQuery("SELECT DATABASE()")) {
+            result.next();
+            return result.getString(1);
+        }
+    }
+}
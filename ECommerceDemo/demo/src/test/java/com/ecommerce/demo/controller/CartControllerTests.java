@@ -0,0 +1,96 @@
+package com.ecommerce.demo.controller;
+
+import com.ecommerce.demo.dto.CartItemDto;
+import com.ecommerce.demo.entity.Customer;
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.repository.CustomerRepository;
+import com.ecommerce.demo.repository.ProductRepository;
+import com.ecommerce.demo.service.CartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The cart read varies by Accept like the product reads, so each format needs its own ETag:
+// otherwise a JSON ETag would revalidate a cached CBOR or Smile copy of the cart.
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:cartcontrollertests;DB_CLOSE_DELAY=-1;MODE=MySQL")
+@AutoConfigureMockMvc
+@WithMockUser // Paths under the /api context path need HTTP Basic (see SecurityConfig)
+class CartControllerTests {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CartService cartService;
+
+    private String cartPath;
+
+    @BeforeEach
+    void createCart() {
+        long n = System.nanoTime();
+        Customer customer = new Customer();
+        customer.setName("Cart Customer " + n);
+        customer.setEmail("cart" + n + "@example.com");
+        customer = customerRepository.save(customer);
+        Product product = new Product();
+        product.setName("Cart Product " + n);
+        product.setPrice(7.5);
+        product = productRepository.save(product);
+
+        CartItemDto line = new CartItemDto();
+        line.setCustomerId(customer.getId());
+        line.setProductId(product.getId());
+        line.setQuantity(2);
+        cartService.addOrUpdateCartItem(line);
+        cartPath = "/api/cart/" + customer.getId();
+    }
+
+    @Test
+    void eachFormatHasItsOwnETag() throws Exception {
+        String json = etag("application/json");
+        String cbor = etag("application/cbor");
+        String smile = etag("application/x-jackson-smile");
+        assertEquals(cbor, json.replaceAll("\"$", "-cbor\""));
+        assertEquals(smile, json.replaceAll("\"$", "-smile\""));
+
+        // The JSON ETag does not validate the CBOR copy, but the CBOR one does
+        mockMvc.perform(request().header(HttpHeaders.ACCEPT, "application/cbor")
+                        .header(HttpHeaders.IF_NONE_MATCH, json))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/cbor"));
+        mockMvc.perform(request().header(HttpHeaders.ACCEPT, "application/cbor")
+                        .header(HttpHeaders.IF_NONE_MATCH, cbor))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void nothingAcceptableIsRejected() throws Exception {
+        mockMvc.perform(request().header(HttpHeaders.ACCEPT, "text/html"))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    private String etag(String accept) throws Exception {
+        return mockMvc.perform(request().header(HttpHeaders.ACCEPT, accept))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(accept))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    // The application runs under /api (server.servlet.context-path), which MockMvc has to be told
+    private MockHttpServletRequestBuilder request() {
+        return get(cartPath).contextPath("/api");
+    }
+}
@@ -0,0 +1,98 @@
+package com.ecommerce.demo.controller;
+
+import com.ecommerce.demo.entity.Product;
+import com.ecommerce.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Content negotiation of the product reads: the format is picked from Accept before anything is loaded,
+// and each format has its own ETag, so a cached JSON copy never validates a CBOR or Smile one.
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:productcontrollertests;DB_CLOSE_DELAY=-1;MODE=MySQL")
+@AutoConfigureMockMvc
+@WithMockUser // Paths under the /api context path need HTTP Basic (see SecurityConfig)
+class ProductControllerTests {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Long productId;
+
+    @BeforeEach
+    void createProduct() {
+        Product product = new Product();
+        product.setName("Negotiated Product " + System.nanoTime());
+        product.setPrice(12.5);
+        productId = productRepository.save(product).getId();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "''                                              | application/json",
+            "*/*                                             | application/json",
+            "application/cbor                                | application/cbor",
+            "application/x-jackson-smile                     | application/x-jackson-smile",
+            "application/json;q=0.5, application/cbor        | application/cbor",
+            "application/cbor;q=0.5, application/json        | application/json",
+            "application/*, application/x-jackson-smile      | application/x-jackson-smile",
+            "text/html, */*;q=0.1                            | application/json",
+            "application/cbor;q=0, */*                       | application/json"
+    })
+    void theFormatFollowsTheAcceptHeader(String accept, String contentType) throws Exception {
+        for (String path : new String[]{"/api/products", "/api/products/" + productId}) {
+            mockMvc.perform(request(path).header(HttpHeaders.ACCEPT, accept))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(contentType));
+        }
+    }
+
+    @Test
+    void nothingAcceptableIsRejected() throws Exception {
+        mockMvc.perform(request("/api/products/" + productId).header(HttpHeaders.ACCEPT, "text/html"))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void eachFormatHasItsOwnETag() throws Exception {
+        for (String path : new String[]{"/api/products", "/api/products/" + productId}) {
+            String json = etag(path, "application/json");
+            String cbor = etag(path, "application/cbor");
+            String smile = etag(path, "application/x-jackson-smile");
+            assertEquals(cbor, json.replaceAll("\"$", "-cbor\""));
+            assertEquals(smile, json.replaceAll("\"$", "-smile\""));
+
+            // The JSON ETag does not validate the CBOR copy, but the CBOR one does
+            mockMvc.perform(request(path).header(HttpHeaders.ACCEPT, "application/cbor")
+                            .header(HttpHeaders.IF_NONE_MATCH, json))
+                    .andExpect(status().isOk());
+            mockMvc.perform(request(path).header(HttpHeaders.ACCEPT, "application/cbor")
+                            .header(HttpHeaders.IF_NONE_MATCH, cbor))
+                    .andExpect(status().isNotModified());
+        }
+    }
+
+    private String etag(String path, String accept) throws Exception {
+        return mockMvc.perform(request(path).header(HttpHeaders.ACCEPT, accept))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    // The application runs under /api (server.servlet.context-path), which MockMvc has to be told
+    private static MockHttpServletRequestBuilder request(String path) {
+        return get(path).contextPath("/api");
+    }
+}
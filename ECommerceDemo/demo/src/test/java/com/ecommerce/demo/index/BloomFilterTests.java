@@ -0,0 +1,37 @@
+package com.ecommerce.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+    @Test
+    void addedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01, 1 << 20);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("user" + i + "@example.com"));
+        IntStream.range(0, 10_000).forEach(i -> assertTrue(filter.mightContain("user" + i + "@example.com")));
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01, 1 << 20);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("user" + i + "@example.com"));
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> filter.mightContain("other" + i + "@example.com"))
+                .count();
+        assertTrue(falsePositives < 2_000, "Too many false positives: " + falsePositives);
+    }
+
+    @Test
+    void memoryBudgetCapsTheSize() {
+        BloomFilter filter = new BloomFilter(1_000_000, 0.001, 64 * 1024);
+        assertEquals(64 * 1024, filter.sizeInBytes());
+        // Over budget means a worse false-positive rate, not a failure
+        IntStream.range(0, 1_000).forEach(i -> filter.put("user" + i));
+        assertTrue(filter.mightContain("user999"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.ecommerce.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The clock is passed in, so decay and session windows are tested without waiting
+class CartActivityIndexTests {
+    private static final long MINUTE = 60_000_000_000L;
+    private static final long HALF_LIFE = 60 * MINUTE;
+
+    private final CartActivityIndex index = new CartActivityIndex(
+            50, 10, 1000, 5, 1000, 30 * MINUTE, HALF_LIFE, 0);
+
+    @Test
+    void trendingIsByQuantityAndRemovalsTakeItBack() {
+        index.added(1, 100, 3, 0);
+        index.added(2, 200, 2, 0);
+        index.added(3, 200, 2, 0);
+        index.removed(1, 100, 2, false, 0);
+
+        assertEquals(List.of(new CartActivityIndex.Scored(200, 4), new CartActivityIndex.Scored(100, 1)),
+                index.trending(10, 0));
+    }
+
+    @Test
+    void oldActivityDecays() {
+        index.added(1, 100, 4, 0);
+        index.added(2, 200, 3, 2 * HALF_LIFE);
+
+        List<CartActivityIndex.Scored> trending = index.trending(10, 2 * HALF_LIFE);
+        // 4 quantity two half-lives ago counts as 1 now, so the newer 3 leads
+        assertEquals(200, trending.get(0).productId());
+        assertEquals(3, trending.get(0).score(), 1e-9);
+        assertEquals(1, trending.get(1).score(), 1e-9);
+        // Long after the weights had to be rescaled, scores are still right
+        index.added(3, 300, 1, 100 * HALF_LIFE);
+        assertEquals(1, index.trending(1, 100 * HALF_LIFE).get(0).score(), 1e-9);
+        assertEquals(300, index.trending(1, 100 * HALF_LIFE).get(0).productId());
+    }
+
+    @Test
+    void productsAddedToTheSameCartArePaired() {
+        for (long customer = 1; customer <= 3; customer++) {
+            index.added(customer, 100, 1, 0);
+            index.added(customer, 200, 1, MINUTE);
+        }
+        index.added(4, 100, 1, 0);
+        index.added(4, 300, 1, MINUTE);
+        index.added(4, 300, 5, 2 * MINUTE); // More of the same: no new pair
+
+        List<CartActivityIndex.Scored> alsoCarted = index.alsoCarted(100, 10, MINUTE);
+        assertEquals(200, alsoCarted.get(0).productId());
+        assertEquals(3, alsoCarted.get(0).score(), 1e-6);
+        assertEquals(300, alsoCarted.get(1).productId());
+        assertEquals(1, alsoCarted.get(1).score(), 1e-6);
+        assertEquals(List.of(100L), index.alsoCarted(300, 10, MINUTE).stream()
+                .map(CartActivityIndex.Scored::productId).toList());
+    }
+
+    @Test
+    void removedProductsAndStaleSessionsAreNotPaired() {
+        index.added(1, 100, 1, 0);
+        index.removed(1, 100, 1, true, 0);
+        index.added(1, 200, 1, MINUTE);
+        index.added(2, 300, 1, 0);
+        index.added(2, 400, 1, 45 * MINUTE); // Past the 30 minute session window
+        index.added(3, 500, 1, 0);
+        index.cleared(3);
+        index.added(3, 600, 1, MINUTE);
+
+        for (long product : new long[]{200, 400, 600}) {
+            assertTrue(index.alsoCarted(product, 10, 45 * MINUTE).isEmpty(), "Paired " + product);
+        }
+    }
+
+    @Test
+    void lowerQuantityKeepsTheProductInTheRecentCart() {
+        index.added(1, 100, 3, 0);
+        index.added(1, 200, 1, 0);
+        index.removed(1, 100, 1, false, 0); // 3 -> 2
+        index.added(1, 100, 1, 0); // 2 -> 3: still the same line, so no new pair
+
+        assertEquals(1, index.alsoCarted(200, 10, 0).get(0).score(), 1e-9);
+    }
+
+    @Test
+    void deletedProductsDisappear() {
+        index.added(1, 100, 1, 0);
+        index.added(1, 200, 1, 0);
+        index.removeProduct(200);
+
+        assertEquals(List.of(100L), index.trending(10, 0).stream().map(CartActivityIndex.Scored::productId).toList());
+        assertTrue(index.alsoCarted(100, 10, 0).isEmpty());
+        assertTrue(index.alsoCarted(200, 10, 0).isEmpty());
+    }
+
+    // Product 100 still lists 200, but 200 has evicted 100 for busier pairs: deleting 200 must reach 100's
+    // list anyway, and the carts that hold 200 must not pair it with anything added later
+    @Test
+    void deletedProductsLeaveListsThatDoNotTrackThemBack() {
+        index.added(1, 100, 1, 0);
+        index.added(1, 200, 1, 0);
+        long customer = 2;
+        for (long product = 301; product <= 310; product++) { // 200's 10 slots, each pair seen twice
+            for (int i = 0; i < 2; i++) {
+                index.added(customer, 200, 1, 0);
+                index.added(customer++, product, 1, 0);
+            }
+        }
+        assertTrue(index.alsoCarted(200, 10, 0).stream().noneMatch(pair -> pair.productId() == 100));
+        assertEquals(List.of(200L), index.alsoCarted(100, 10, 0).stream().map(CartActivityIndex.Scored::productId).toList());
+
+        index.removeProduct(200);
+        index.added(1, 400, 1, 0);
+
+        assertTrue(index.alsoCarted(100, 10, 0).stream().noneMatch(pair -> pair.productId() == 200));
+        assertEquals(List.of(100L), index.alsoCarted(400, 10, 0).stream().map(CartActivityIndex.Scored::productId).toList());
+    }
+}
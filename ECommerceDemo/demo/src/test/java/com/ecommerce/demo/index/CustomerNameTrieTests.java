@@ -0,0 +1,96 @@
+package com.ecommerce.demo.index;
+
+import com.ecommerce.demo.dto.CustomerSuggestionDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CustomerNameTrieTests {
+
+    @Test
+    void matchesAnyWordIgnoringCaseAndAccents() {
+        CustomerNameTrie trie = new CustomerNameTrie(10);
+        trie.put(1, "Alice Smith");
+        trie.put(2, "Bob Smits");
+        trie.put(3, "Zoë O'Brien");
+
+        assertEquals(List.of(1L, 2L), ids(trie.suggest("SMI", 10)));
+        assertEquals(List.of(3L), ids(trie.suggest("zoe o b", 10)));
+        assertEquals(List.of(3L), ids(trie.suggest("brie", 10)));
+        assertEquals(List.of(), ids(trie.suggest("smith alice", 10)));
+    }
+
+    @Test
+    void updatesAndDeletesAreReflected() {
+        CustomerNameTrie trie = new CustomerNameTrie(10);
+        trie.put(1, "Alice Smith");
+        trie.put(1, "Alice Jones");
+        assertEquals(List.of(), ids(trie.suggest("smith", 10)));
+        assertEquals(List.of(1L), ids(trie.suggest("jon", 10)));
+
+        trie.remove(1);
+        assertEquals(List.of(), ids(trie.suggest("al", 10)));
+        assertEquals(0, trie.size());
+    }
+
+    // Customer 1 matches "ann" twice and must not crowd customer 2 out of a top 2
+    @Test
+    void aCustomerMatchingSeveralWordsTakesOnePlace() {
+        CustomerNameTrie trie = new CustomerNameTrie(2);
+        trie.put(1, "Ann Ann Bell");
+        trie.put(2, "Anna");
+        trie.put(3, "Annie");
+
+        assertEquals(List.of(1L, 2L), ids(trie.suggest("ann", 2)));
+        trie.remove(2);
+        assertEquals(List.of(1L, 3L), ids(trie.suggest("ann", 2)));
+    }
+
+    // Random names, renames and deletes, checked against a brute-force scan after every step
+    @Test
+    void agreesWithAFullScan() {
+        Random random = new Random(42);
+        String[] words = {"ann", "anna", "anne", "annie", "an", "bob", "bobby", "b", "carl", "carla", "car"};
+        CustomerNameTrie trie = new CustomerNameTrie(3);
+        Map<Long, String> names = new HashMap<>();
+
+        for (int step = 0; step < 3_000; step++) {
+            long id = random.nextInt(60);
+            if (random.nextInt(4) == 0) {
+                trie.remove(id);
+                names.remove(id);
+            } else {
+                String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                trie.put(id, name);
+                names.put(id, name);
+            }
+            String word = words[random.nextInt(words.length)];
+            String prefix = random.nextInt(5) == 0 ? word + " " : word.substring(0, 1 + random.nextInt(word.length()));
+            assertEquals(expected(names, prefix, 3), ids(trie.suggest(prefix, 3)), "prefix " + prefix + " at step " + step);
+        }
+    }
+
+    // Best entry per customer over its word keys, ranked by (key, id), cut after k customers
+    private static List<Long> expected(Map<Long, String> names, String prefix, int k) {
+        record Key(String key, long id) {
+        }
+        List<Key> keys = new ArrayList<>();
+        names.forEach((id, name) -> {
+            String[] words = name.split(" ");
+            for (int i = 0; i < words.length; i++) {
+                String key = String.join(" ", Arrays.copyOfRange(words, i, words.length));
+                if (key.startsWith(prefix)) {
+                    keys.add(new Key(key, id));
+                }
+            }
+        });
+        keys.sort(Comparator.comparing(Key::key).thenComparing(Key::id));
+        return keys.stream().map(Key::id).distinct().limit(k).toList();
+    }
+
+    private static List<Long> ids(List<CustomerSuggestionDto> suggestions) {
+        return suggestions.stream().map(CustomerSuggestionDto::getId).toList();
+    }
+}
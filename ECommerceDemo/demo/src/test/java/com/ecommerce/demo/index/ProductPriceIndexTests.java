@@ -0,0 +1,67 @@
+package com.ecommerce.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductPriceIndexTests {
+
+    // Few distinct prices, so the id decides the order of many entries
+    @Test
+    void rebuildSortsByPriceThenId() {
+        Random random = new Random(7);
+        Map<Long, Double> prices = new HashMap<>();
+        ProductPriceIndex.Builder builder = new ProductPriceIndex.Builder();
+        for (long id = 3_000; id > 0; id--) {
+            double price = random.nextInt(50) / 2.0;
+            prices.put(id, price);
+            builder.add(id, price);
+        }
+        ProductPriceIndex index = new ProductPriceIndex();
+
+        index.rebuild(builder);
+
+        assertEquals(expected(prices), entries(index.snapshot()));
+    }
+
+    @Test
+    void putsAndRemovesKeepTheOrder() {
+        Random random = new Random(11);
+        Map<Long, Double> prices = new HashMap<>();
+        ProductPriceIndex index = new ProductPriceIndex();
+        for (int step = 0; step < 2_000; step++) {
+            long id = random.nextInt(100);
+            if (random.nextInt(3) == 0) {
+                index.remove(id);
+                prices.remove(id);
+            } else {
+                double price = random.nextInt(20);
+                index.put(id, price);
+                prices.put(id, price);
+            }
+        }
+
+        assertEquals(expected(prices), entries(index.snapshot()));
+    }
+
+    private static List<String> expected(Map<Long, Double> prices) {
+        return prices.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> entry.getValue() + "/" + entry.getKey())
+                .toList();
+    }
+
+    private static List<String> entries(ProductPriceIndex.Snapshot snapshot) {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            entries.add(snapshot.priceAt(i) + "/" + snapshot.idAt(i));
+        }
+        return entries;
+    }
+}
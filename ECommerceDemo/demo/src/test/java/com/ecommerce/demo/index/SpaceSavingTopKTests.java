@@ -0,0 +1,87 @@
+package com.ecommerce.demo.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTopKTests {
+
+    @Test
+    void heavyHittersOfASkewedStreamAreFoundWithinTheirErrorBounds() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(50);
+        Map<Long, Integer> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // Roughly Zipf over 10,000 keys: key k is drawn about 1/k as often as key 1
+            long key = (long) Math.floor(Math.pow(10_000, random.nextDouble()));
+            topK.add(key, 1);
+            exact.merge(key, 1, Integer::sum);
+        }
+
+        // Every key above total / capacity is guaranteed to be tracked, and the clear leaders come out on top
+        List<SpaceSavingTopK.Entry> top = topK.top(50);
+        exact.forEach((key, count) -> {
+            if (count > 200_000 / 50) {
+                assertTrue(top.stream().anyMatch(entry -> entry.key() == key), "Missing heavy hitter " + key);
+            }
+        });
+        assertEquals(List.of(1L, 2L, 3L), top.subList(0, 3).stream().map(SpaceSavingTopK.Entry::key).toList());
+        for (SpaceSavingTopK.Entry entry : top) {
+            int actual = exact.get(entry.key());
+            assertTrue(entry.count() >= actual && entry.guaranteed() <= actual, entry + " vs " + actual);
+        }
+    }
+
+    @Test
+    void countsAreExactWhileEveryKeyFits() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(100);
+        Map<Long, Double> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(100);
+            double weight = random.nextInt(5) + 1;
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    topK.subtract(key, weight);
+                    exact.computeIfPresent(key, (k, count) -> Math.max(0, count - weight));
+                }
+                case 1 -> {
+                    topK.remove(key);
+                    exact.remove(key);
+                }
+                default -> {
+                    topK.add(key, weight);
+                    exact.merge(key, weight, Double::sum);
+                }
+            }
+        }
+
+        assertEquals(exact.size(), topK.size());
+        exact.forEach((key, count) -> assertEquals(count, topK.count(key), 1e-9));
+        List<SpaceSavingTopK.Entry> top = topK.top(100);
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).count() >= top.get(i).count());
+        }
+    }
+
+    @Test
+    void scalingKeepsTheOrder() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(3);
+        topK.add(1, 30);
+        topK.add(2, 20);
+        topK.add(3, 10);
+        topK.scale(0.5);
+        topK.add(4, 1); // Takes over key 3 (5.0), the smallest
+
+        assertEquals(List.of(1L, 2L, 4L), topK.top(3).stream().map(SpaceSavingTopK.Entry::key).toList());
+        assertEquals(15, topK.count(1), 1e-9);
+        assertEquals(6, topK.count(4), 1e-9);
+        assertEquals(1, topK.top(3).get(2).guaranteed(), 1e-9);
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.demo.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AimdLimiterTests {
+    private static final long THRESHOLD = 100_000_000L; // 100 ms
+    private static final long FAST = 10_000_000L;
+    private static final long SLOW = 500_000_000L;
+
+    @Test
+    void rejectsOverTheLimit() {
+        AimdLimiter limiter = new AimdLimiter("test", 2, 1, 10, THRESHOLD, 0.5);
+        assertEquals(1, limiter.tryAcquire());
+        assertEquals(2, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+
+        limiter.release(2, FAST);
+        assertTrue(limiter.tryAcquire() > 0);
+    }
+
+    @Test
+    void growsWhileFastAndBusy() {
+        AimdLimiter limiter = new AimdLimiter("test", 4, 1, 6, THRESHOLD, 0.5);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(limiter.getLimit(), FAST, 0);
+        }
+        assertEquals(6, limiter.getLimit()); // Capped at max-limit
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        AimdLimiter limiter = new AimdLimiter("test", 10, 1, 100, THRESHOLD, 0.5);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(1, FAST, 0);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void backsOffOncePerThresholdInterval() {
+        AimdLimiter limiter = new AimdLimiter("test", 16, 1, 100, THRESHOLD, 0.5);
+        long now = System.nanoTime();
+        // A burst of slow requests finishing together is one signal
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(16, SLOW, now);
+        }
+        assertEquals(8, limiter.getLimit());
+        limiter.onSample(8, SLOW, now + THRESHOLD);
+        assertEquals(4, limiter.getLimit());
+        // Never below min-limit
+        for (int i = 2; i < 20; i++) {
+            limiter.onSample(4, SLOW, now + i * THRESHOLD);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+}
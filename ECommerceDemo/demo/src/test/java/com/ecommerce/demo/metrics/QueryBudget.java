@@ -0,0 +1,66 @@
+package com.ecommerce.demo.metrics;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Query budgets for tests: runs a call with SQL counting switched on for the calling thread
+// (the same datasource-proxy listener that feeds X-SQL-Count) and fails when it executes a different
+// number of statements than expected. A JDBC batch counts as one statement, so the budget is the
+// number of database round trips; the failure message lists the SQL that actually ran.
+// The call must run on the calling thread and outside an HTTP request (it replaces the request's stats).
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    // Exactly this many statements: use for hot paths, so an extra query shows up immediately
+    public static <T> T assertStatements(int expected, Supplier<T> call) {
+        return check(expected, true, call);
+    }
+
+    public static void assertStatements(int expected, Runnable call) {
+        check(expected, true, asSupplier(call));
+    }
+
+    // At most this many statements
+    public static <T> T assertMaxStatements(int max, Supplier<T> call) {
+        return check(max, false, call);
+    }
+
+    public static void assertMaxStatements(int max, Runnable call) {
+        check(max, false, asSupplier(call));
+    }
+
+    private static <T> T check(int budget, boolean exact, Supplier<T> call) {
+        RequestSqlStats stats = RequestSqlStats.start(true);
+        T result;
+        try {
+            result = call.get();
+        } finally {
+            RequestSqlStats.end();
+        }
+        int actual = stats.getStatements();
+        if (exact ? actual != budget : actual > budget) {
+            fail("Expected " + (exact ? "" : "at most ") + budget + " SQL statement(s) but " + actual
+                    + " were executed:\n" + numbered(stats.getSql()));
+        }
+        return result;
+    }
+
+    private static Supplier<Void> asSupplier(Runnable call) {
+        return () -> {
+            call.run();
+            return null;
+        };
+    }
+
+    private static String numbered(List<String> sql) {
+        return IntStream.range(0, sql.size())
+                .mapToObj(i -> "  " + (i + 1) + ". " + sql.get(i))
+                .collect(Collectors.joining("\n"));
+    }
+}
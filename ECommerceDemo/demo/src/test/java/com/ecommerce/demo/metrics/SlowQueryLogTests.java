@@ -0,0 +1,71 @@
+package com.ecommerce.demo.metrics;
+
+import com.ecommerce.demo.dto.SlowQueryDto;
+import com.ecommerce.demo.service.DatabaseStatisticsService;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowQueryLogTests {
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void onlyStatementsAtTheThresholdOrSlowerAreKept() {
+        SlowQueryLog log = new SlowQueryLog(100, 0, 10);
+        offer(log, 99 * MILLIS, "SELECT fast");
+        offer(log, 100 * MILLIS, "SELECT at threshold");
+        offer(log, 250 * MILLIS, "SELECT slow");
+
+        assertEquals(List.of("SELECT slow", "SELECT at threshold"), sql(log.getEntries()));
+        assertTrue(log.getEntries().stream().noneMatch(SlowQueryDto::isSampled));
+    }
+
+    @Test
+    void sampledFastStatementsAreMarkedAsSuch() {
+        SlowQueryLog log = new SlowQueryLog(100, 1.0, 10); // Keeps every fast statement
+        offer(log, MILLIS, "SELECT fast");
+        offer(log, 200 * MILLIS, "SELECT slow");
+
+        List<SlowQueryDto> entries = log.getEntries();
+        assertEquals(List.of("SELECT slow", "SELECT fast"), sql(entries));
+        assertFalse(entries.get(0).isSampled());
+        assertTrue(entries.get(1).isSampled());
+    }
+
+    @Test
+    void aFullBufferOverwritesTheOldestEntries() {
+        SlowQueryLog log = new SlowQueryLog(0, 0, 3);
+        for (int i = 1; i <= 7; i++) {
+            offer(log, MILLIS, "SELECT " + i);
+        }
+
+        assertEquals(List.of("SELECT 7", "SELECT 6", "SELECT 5"), sql(log.getEntries()));
+    }
+
+    // What GET /api/admin/slow-queries?limit=... returns: the newest first, even across the wrap-around
+    @Test
+    void theEndpointListsTheNewestFirst() {
+        SlowQueryLog log = new SlowQueryLog(0, 0, 4);
+        for (int i = 1; i <= 6; i++) {
+            offer(log, MILLIS, "SELECT " + i);
+        }
+        DatabaseStatisticsService statistics = new DatabaseStatisticsService(null, log);
+
+        assertEquals(List.of("SELECT 6", "SELECT 5"), sql(statistics.getSlowQueries(2)));
+        assertEquals(List.of("SELECT 6", "SELECT 5", "SELECT 4", "SELECT 3"), sql(statistics.getSlowQueries(null)));
+    }
+
+    private static void offer(SlowQueryLog log, long elapsedNanos, String sql) {
+        log.offer(elapsedNanos, new ExecutionInfo(), List.of(new QueryInfo(sql)));
+    }
+
+    private static List<String> sql(List<SlowQueryDto> queries) {
+        return queries.stream().map(SlowQueryDto::getSql).toList();
+    }
+}
@@ -0,0 +1,51 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.CustomerDto;
+import com.ecommerce.demo.dto.CustomerSuggestionDto;
+import com.ecommerce.demo.event.CustomerChangedEvent;
+import com.ecommerce.demo.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CustomerSuggestServiceTests {
+
+    // Changes committed while the load streams the table, to customers it has not read yet:
+    // the load reads the old rows afterwards, and must not bring them back
+    @Test
+    void changesDuringTheLoadAreNotUndone() {
+        CustomerRepository repository = mock(CustomerRepository.class);
+        CustomerSuggestService service = new CustomerSuggestService(repository, 10);
+        when(repository.streamAllNames()).thenAnswer(invocation -> Stream.of(
+                        new CustomerSuggestionDto(1L, "Ada Walker"),
+                        new CustomerSuggestionDto(2L, "Alan Walsh"),
+                        new CustomerSuggestionDto(3L, "Alma Ward"))
+                .peek(customer -> {
+                    if (customer.getId() == 1L) {
+                        service.onCustomerChanged(CustomerChangedEvent.deleted(2L));
+                        service.onCustomerChanged(CustomerChangedEvent.updated(customer(3L, "Alma Grant")));
+                    }
+                }));
+
+        service.load();
+
+        assertEquals(List.of(1L), ids(service.suggest("wa", 10)));
+        assertEquals(List.of(3L), ids(service.suggest("grant", 10)));
+    }
+
+    private static CustomerDto customer(Long id, String name) {
+        CustomerDto customer = new CustomerDto();
+        customer.setId(id);
+        customer.setName(name);
+        return customer;
+    }
+
+    private static List<Long> ids(List<CustomerSuggestionDto> suggestions) {
+        return suggestions.stream().map(CustomerSuggestionDto::getId).toList();
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.dto.ResourceVersion;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductJsonCacheTests {
+    private final ProductJsonCache cache = new ProductJsonCache(new ObjectMapper(), new SimpleMeterRegistry(), 1 << 20);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void servesTheCachedBytesWhileTheVersionIsUnchanged() {
+        ResourceVersion version = new ResourceVersion("1-0", null);
+        assertEquals("{\"id\":1,\"name\":\"Lamp\",\"price\":10.0,\"description\":null}", json(cache.getProduct(1L, version, () -> load("Lamp"))));
+        cache.getProduct(1L, version, () -> load("Lamp"));
+        assertEquals(1, loads.get());
+    }
+
+    // A body cached for an older version is never served, even if no event removed it
+    @Test
+    void reloadsWhenTheVersionChanged() {
+        cache.getProduct(1L, new ResourceVersion("1-0", null), () -> load("Lamp"));
+        byte[] json = cache.getProduct(1L, new ResourceVersion("1-1", null), () -> load("Desk Lamp"));
+        assertEquals(2, loads.get());
+        assertTrue(json(json).contains("Desk Lamp"));
+    }
+
+    @Test
+    void productChangesEvictTheProductAndEveryPage() {
+        ResourceVersion version = new ResourceVersion("1-0", null);
+        cache.getProduct(1L, version, () -> load("Lamp"));
+        cache.getPage(null, 20, "id", version, () -> load("Page"));
+        cache.onProductChanged(ProductChangedEvent.deleted(1L));
+        cache.getProduct(1L, version, () -> load("Lamp"));
+        cache.getPage(null, 20, "id", version, () -> load("Page"));
+        assertEquals(4, loads.get());
+    }
+
+    private ProductDto load(String name) {
+        loads.incrementAndGet();
+        ProductDto product = new ProductDto();
+        product.setId(1L);
+        product.setName(name);
+        product.setPrice(10.0);
+        return product;
+    }
+
+    private static String json(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.dto.ProductPage;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductPriceFilterServiceTests {
+
+    // Changes committed while the rebuild streams the catalog: a delete and a new price for products it
+    // has already read, and a product it will never see. All must survive the swap to the new index.
+    @Test
+    void changesDuringARebuildAreNotLost() {
+        ProductPriceFilterService[] service = new ProductPriceFilterService[1];
+        ProductService catalog = new ProductService(null, null, null, null, null, null, 1000) {
+            @Override
+            public void forEachProduct(Consumer<ProductDto> consumer) {
+                consumer.accept(product(1L, 10.0));
+                consumer.accept(product(2L, 20.0));
+                service[0].onProductChanged(ProductChangedEvent.deleted(1L));
+                service[0].onProductChanged(ProductChangedEvent.updated(product(2L, 90.0)));
+                service[0].onProductChanged(ProductChangedEvent.created(product(4L, 40.0)));
+                consumer.accept(product(3L, 30.0));
+            }
+
+            @Override
+            public List<ProductDto> getProductsByIds(List<Long> ids) {
+                return ids.stream().map(id -> product(id, 0.0)).toList();
+            }
+        };
+        service[0] = new ProductPriceFilterService(catalog);
+
+        service[0].rebuildIndex();
+
+        ProductPage page = service[0].getProductsByPrice(null, null, null, 10, 1);
+        assertEquals(List.of(3L, 4L, 2L), page.getItems().stream().map(ProductDto::getId).toList());
+        assertEquals(3, page.getTotalMatches());
+        assertEquals(90.0, page.getPriceHistogram().get(0).getTo());
+    }
+
+    private static ProductDto product(Long id, double price) {
+        ProductDto product = new ProductDto();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(price);
+        return product;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ecommerce.demo.service;
+
+import com.ecommerce.demo.dto.ProductDto;
+import com.ecommerce.demo.event.ProductChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductSearchServiceTests {
+
+    // Changes committed while the rebuild streams the catalog: one to a product it has already read,
+    // one to a product it will never see. Both must survive the swap to the new index.
+    @Test
+    void changesDuringARebuildAreNotLost() {
+        ProductSearchService[] service = new ProductSearchService[1];
+        ProductService catalog = new ProductService(null, null, null, null, null, null, 1000) {
+            @Override
+            public void forEachProduct(Consumer<ProductDto> consumer) {
+                consumer.accept(product(1L, "Walnut desk"));
+                service[0].onProductChanged(ProductChangedEvent.deleted(1L));
+                service[0].onProductChanged(ProductChangedEvent.created(product(3L, "Walnut shelf")));
+                consumer.accept(product(2L, "Walnut chair"));
+            }
+        };
+        service[0] = new ProductSearchService(catalog);
+
+        service[0].rebuildIndex();
+
+        assertEquals(List.of(2L, 3L), service[0].search("walnut", 10).stream().map(ProductDto::getId).sorted().toList());
+    }
+
+    private static ProductDto product(Long id, String name) {
+        ProductDto product = new ProductDto();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(100.0);
+        return product;
+    }
+}